@@ -0,0 +1,229 @@
+/*
+ * AllocationTest.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.app.Instrumentation;
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+
+import com.wunderlist.slidinglayer.transformer.SlideJoyTransformer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that once a drag has started, moving the layer with the finger, releasing it and letting it settle do not
+ * allocate on the main thread, transformer included. A first gesture warms up everything created lazily, and the
+ * events of the measured ones are obtained before counting starts.
+ * <p/>
+ * Allocations are read from the bytes the runtime has allocated ever, which is only available from Marshmallow on.
+ * The counter covers the whole process, so the test thread does nothing but sleep while a gesture is measured. It
+ * also grows by whole thread-local buffers rather than by object, so several gestures are measured for small
+ * allocations to add up to a buffer.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AllocationTest {
+
+    private static final String BYTES_ALLOCATED = "art.gc.bytes-allocated";
+
+    private static final float Y = LayerFixture.HEIGHT / 2;
+    private static final float START_X = 100;
+    private static final float STEP = 10;
+    private static final long STEP_MILLIS = 16;
+
+    /**
+     * Moves past any touch slop, after which the drag has started
+     */
+    private static final int START_STEPS = 10;
+    private static final int DRAG_STEPS = 10;
+    private static final int HOLD_STEPS = 10;
+
+    private static final int WARM_UP_GESTURES = 2;
+    private static final int MEASURED_GESTURES = 20;
+
+    private static final long SETTLE_TIMEOUT_MILLIS = 2000;
+    private static final long POLL_INTERVAL_MILLIS = 16;
+
+    private Instrumentation mInstrumentation;
+    private LayerFixture mFixture;
+    private MotionEvent[] mEvents;
+
+    private boolean mCounting;
+    private long mBytesAtStart;
+    private long mAllocatedBytes;
+    private volatile boolean mSettled;
+
+    private final SlidingLayer.OnInteractListener mOnInteractListener = new SlidingLayer.OnInteractListener() {
+        @Override
+        public void onOpen() {
+        }
+
+        @Override
+        public void onShowPreview() {
+        }
+
+        @Override
+        public void onClose() {
+        }
+
+        @Override
+        public void onOpened() {
+            if (mCounting) {
+                mAllocatedBytes += readAllocatedBytes() - mBytesAtStart;
+                mCounting = false;
+            }
+            mSettled = true;
+        }
+
+        @Override
+        public void onPreviewShowed() {
+        }
+
+        @Override
+        public void onClosed() {
+        }
+    };
+
+    @Before
+    public void setUp() {
+
+        assumeTrue("Allocated bytes are not reported before Marshmallow",
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && Debug.getRuntimeStat(BYTES_ALLOCATED) != null);
+
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mFixture = new LayerFixture(mInstrumentation.getTargetContext());
+                mFixture.layer.setLayerTransformer(new SlideJoyTransformer());
+                mFixture.layer.setOnInteractListener(mOnInteractListener);
+            }
+        });
+    }
+
+    @Test
+    public void dragAndSettleDoNotAllocate() {
+
+        for (int i = 0; i < WARM_UP_GESTURES; i++) {
+            runGesture(false);
+        }
+        for (int i = 0; i < MEASURED_GESTURES; i++) {
+            runGesture(true);
+        }
+
+        assertEquals("Bytes allocated while dragging and settling", 0, mAllocatedBytes);
+    }
+
+    /**
+     * Drag the layer less than half its size, hold it still and release it so it settles back open.
+     */
+    private void runGesture(final boolean count) {
+
+        mSettled = false;
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+
+                obtainEvents(SystemClock.uptimeMillis());
+
+                // The drag starts within these
+                for (int i = 0; i <= START_STEPS; i++) {
+                    mFixture.root.dispatchTouchEvent(mEvents[i]);
+                }
+
+                if (count) {
+                    mCounting = true;
+                    mBytesAtStart = readAllocatedBytes();
+                }
+
+                for (int i = START_STEPS + 1; i < mEvents.length; i++) {
+                    mFixture.root.dispatchTouchEvent(mEvents[i]);
+                }
+            }
+        });
+
+        waitUntilSettled();
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (MotionEvent event : mEvents) {
+                    event.recycle();
+                }
+                mEvents = null;
+            }
+        });
+    }
+
+    /**
+     * Wait without allocating, as anything the test thread allocates is counted too.
+     */
+    private void waitUntilSettled() {
+
+        final long deadline = SystemClock.uptimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        while (!mSettled) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                fail("The layer did not settle back open");
+            }
+            SystemClock.sleep(POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private static long readAllocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat(BYTES_ALLOCATED));
+    }
+
+    private void obtainEvents(long downTime) {
+
+        mEvents = new MotionEvent[1 + START_STEPS + DRAG_STEPS + HOLD_STEPS + 1];
+
+        int index = 0;
+        long time = downTime;
+        float x = START_X;
+        mEvents[index++] = LayerFixture.obtain(downTime, time, MotionEvent.ACTION_DOWN, x, Y);
+
+        for (int i = 0; i < START_STEPS + DRAG_STEPS; i++) {
+            time += STEP_MILLIS;
+            x += STEP;
+            mEvents[index++] = LayerFixture.obtain(downTime, time, MotionEvent.ACTION_MOVE, x, Y);
+        }
+
+        // No velocity left on release
+        for (int i = 0; i < HOLD_STEPS; i++) {
+            time += STEP_MILLIS;
+            mEvents[index++] = LayerFixture.obtain(downTime, time, MotionEvent.ACTION_MOVE, x, Y);
+        }
+
+        mEvents[index] = LayerFixture.obtain(downTime, time, MotionEvent.ACTION_UP, x, Y);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * LayerFixture.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import static org.junit.Assert.fail;
+
+/**
+ * An opened layer stuck to the right of a parent laid out off screen, with clickable content so that drags go
+ * through the intercept path, and the means to drive touches into it. Must be created and used on the main thread,
+ * except for {@link #waitForScrollX(Instrumentation, int)}.
+ */
+final class LayerFixture {
+
+    static final int WIDTH = 480;
+    static final int HEIGHT = 800;
+
+    private static final long SETTLE_TIMEOUT_MILLIS = 2000;
+    private static final long POLL_INTERVAL_MILLIS = 16;
+
+    final FrameLayout root;
+    final SlidingLayer layer;
+
+    private final int[] mScrollX = new int[1];
+    private final Runnable mReadScrollX = new Runnable() {
+        @Override
+        public void run() {
+            mScrollX[0] = layer.getScrollX();
+        }
+    };
+
+    LayerFixture(Context context) {
+
+        root = new FrameLayout(context);
+        layer = new SlidingLayer(context);
+        layer.setStickTo(SlidingLayer.STICK_TO_RIGHT);
+
+        final View content = new View(context);
+        content.setClickable(true);
+        layer.addView(content, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+        root.addView(layer, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+
+        root.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, WIDTH, HEIGHT);
+
+        layer.openLayer(false);
+    }
+
+    static MotionEvent obtain(long downTime, long eventTime, int action, float x, float y) {
+        return MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+    }
+
+    /**
+     * Dispatch an event to the parent of the layer and recycle it.
+     */
+    void dispatch(MotionEvent event) {
+        root.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * Drag horizontally from one point to another in evenly spaced moves, then hold still long enough for the
+     * velocity of the drag to drop to nothing.
+     *
+     * @return Time of the last move
+     */
+    long dragAndHold(long downTime, float fromX, float toX, float y, int steps) {
+
+        long time = downTime;
+        dispatch(obtain(downTime, time, MotionEvent.ACTION_DOWN, fromX, y));
+
+        for (int i = 1; i <= steps; i++) {
+            time += POLL_INTERVAL_MILLIS;
+            dispatch(obtain(downTime, time, MotionEvent.ACTION_MOVE, fromX + (toX - fromX) * i / steps, y));
+        }
+        for (int i = 0; i < 10; i++) {
+            time += POLL_INTERVAL_MILLIS;
+            dispatch(obtain(downTime, time, MotionEvent.ACTION_MOVE, toX, y));
+        }
+
+        return time;
+    }
+
+    /**
+     * Wait, off the main thread, for the layer to be scrolled to the given position.
+     */
+    void waitForScrollX(Instrumentation instrumentation, int scrollX) {
+
+        final long deadline = SystemClock.uptimeMillis() + SETTLE_TIMEOUT_MILLIS;
+        while (SystemClock.uptimeMillis() < deadline) {
+            instrumentation.runOnMainSync(mReadScrollX);
+            if (mScrollX[0] == scrollX) {
+                return;
+            }
+            SystemClock.sleep(POLL_INTERVAL_MILLIS);
+        }
+
+        fail("The layer did not settle at " + scrollX + ", it is at " + mScrollX[0]);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * TouchPredictionTest.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.app.Instrumentation;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.MotionEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class TouchPredictionTest {
+
+    private static final float Y = LayerFixture.HEIGHT / 2;
+    private static final float START_X = 100;
+
+    /**
+     * Less than half the layer, so that it settles back open once released
+     */
+    private static final float FIRST_DRAG_DISTANCE = 200;
+
+    /**
+     * Beyond any touch slop, in small enough moves for the prediction to stay short
+     */
+    private static final float SECOND_DRAG_DISTANCE = 120;
+    private static final int SECOND_DRAG_STEPS = 30;
+
+    private Instrumentation mInstrumentation;
+    private LayerFixture mFixture;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mFixture = new LayerFixture(mInstrumentation.getTargetContext());
+                mFixture.layer.setTouchPredictionEnabled(true);
+            }
+        });
+    }
+
+    @Test
+    public void dragAfterSettleStartsWhereTheLayerIs() {
+
+        // First drag, released without velocity so the layer settles back open
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final long downTime = SystemClock.uptimeMillis();
+                final long time = mFixture.dragAndHold(downTime, START_X, START_X + FIRST_DRAG_DISTANCE, Y, 20);
+                mFixture.dispatch(LayerFixture.obtain(downTime, time, MotionEvent.ACTION_UP,
+                        START_X + FIRST_DRAG_DISTANCE, Y));
+            }
+        });
+        mFixture.waitForScrollX(mInstrumentation, 0);
+
+        // Second drag, which has to carry on from the opened layer and not from where the first one ended
+        final int[] scrollX = new int[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final long downTime = SystemClock.uptimeMillis();
+                final long time = mFixture.dragAndHold(downTime, START_X, START_X + SECOND_DRAG_DISTANCE, Y,
+                        SECOND_DRAG_STEPS);
+                scrollX[0] = mFixture.layer.getScrollX();
+                mFixture.dispatch(LayerFixture.obtain(downTime, time, MotionEvent.ACTION_CANCEL,
+                        START_X + SECOND_DRAG_DISTANCE, Y));
+            }
+        });
+
+        // The layer follows the finger minus the slop, it never gets further than the finger went
+        assertTrue("The layer jumped to " + scrollX[0], scrollX[0] <= 0 && scrollX[0] >= -SECOND_DRAG_DISTANCE);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * CurveBenchmark.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the cost of evaluating compiled curves with that of the linear scan they replace, for evenly and
+ * unevenly spaced cue points, and checks both agree. Compiled curves must be faster once they have enough cue points
+ * for the search to pay off, below that they only have to agree. Timings are reported to the log under
+ * {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CurveBenchmark {
+
+    private static final String TAG = "CurveBenchmark";
+
+    private static final int ITERATIONS = 200000;
+    private static final int POSITIONS = 1024;
+    private static final float MAX_ERROR = 1e-5f;
+    private static final int[] SIZES = new int[] { 3, 16, 256 };
+    private static final int ROUNDS = 5;
+
+    /**
+     * Below this many cue points a linear scan is about as fast as any search
+     */
+    private static final int MIN_FASTER_SIZE = 64;
+
+    @Test
+    public void evenlySpaced() {
+        for (int size : SIZES) {
+            run("even " + size, evenCuePoints(size), randomValues(size, new Random(size)));
+        }
+    }
+
+    @Test
+    public void unevenlySpaced() {
+        for (int size : SIZES) {
+            final Random random = new Random(size);
+            run("uneven " + size, unevenCuePoints(size, random), randomValues(size, random));
+        }
+    }
+
+    private static void run(String name, float[] cuePoints, float[] values) {
+
+        final Curve curve = new Curve(cuePoints, values);
+
+        final float[] positions = new float[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            positions[i] = -0.1f + 1.2f * i / (POSITIONS - 1);
+        }
+
+        for (float position : positions) {
+            final float error = Math.abs(curve.evaluate(position) - linearScan(position, cuePoints, values));
+            assertTrue(name + ": off by " + error + " at " + position, error < MAX_ERROR);
+        }
+
+        // Let the runtime compile both first
+        measureCompiled(curve, positions);
+        measureLinearScan(cuePoints, values, positions);
+
+        // The best of several rounds, so that a single pause does not decide the outcome
+        double compiledNanos = Double.MAX_VALUE;
+        double linearScanNanos = Double.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            compiledNanos = Math.min(compiledNanos, measureCompiled(curve, positions));
+            linearScanNanos = Math.min(linearScanNanos, measureLinearScan(cuePoints, values, positions));
+        }
+
+        Log.i(TAG, name + ": compiled " + compiledNanos + " ns/call, linear scan " + linearScanNanos + " ns/call");
+        if (cuePoints.length >= MIN_FASTER_SIZE) {
+            assertTrue(name + ": compiled " + compiledNanos + " ns/call, linear scan " + linearScanNanos + " ns/call",
+                    compiledNanos < linearScanNanos);
+        }
+    }
+
+    /**
+     * @return Average time of a call, in nanoseconds
+     */
+    private static double measureCompiled(Curve curve, float[] positions) {
+
+        float sink = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += curve.evaluate(positions[i & (POSITIONS - 1)]);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        // Keeps the loop from being optimized away
+        assertTrue(!Float.isNaN(sink));
+
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private static double measureLinearScan(float[] cuePoints, float[] values, float[] positions) {
+
+        float sink = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += linearScan(positions[i & (POSITIONS - 1)], cuePoints, values);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        assertTrue(!Float.isNaN(sink));
+
+        return (double) elapsed / ITERATIONS;
+    }
+
+    /**
+     * How curves were evaluated before they could be compiled
+     */
+    private static float linearScan(float position, float[] cuePoints, float[] values) {
+
+        if (position <= cuePoints[0]) {
+            return values[0];
+        }
+
+        for (int i = 1; i < cuePoints.length; i++) {
+            if (position <= cuePoints[i]) {
+                final float previousCuePoint = cuePoints[i - 1];
+                final float previousValue = values[i - 1];
+                final float rangeRatio = (position - previousCuePoint) / (cuePoints[i] - previousCuePoint);
+                return previousValue + ((values[i] - previousValue) * rangeRatio);
+            }
+        }
+
+        return values[values.length - 1];
+    }
+
+    private static float[] evenCuePoints(int size) {
+        final float[] cuePoints = new float[size];
+        for (int i = 0; i < size; i++) {
+            cuePoints[i] = (float) i / (size - 1);
+        }
+        return cuePoints;
+    }
+
+    private static float[] unevenCuePoints(int size, Random random) {
+
+        final float[] cuePoints = new float[size];
+        float total = 0;
+        for (int i = 1; i < size; i++) {
+            total += 0.1f + random.nextFloat();
+            cuePoints[i] = total;
+        }
+        for (int i = 1; i < size; i++) {
+            cuePoints[i] /= total;
+        }
+        return cuePoints;
+    }
+
+    private static float[] randomValues(int size, Random random) {
+        final float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextFloat();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * LookupTableInterpolatorBenchmark.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.animation.Interpolator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the tables the settle interpolators of the layer are baked into stay close enough to them, and that
+ * evaluating a table is faster than evaluating its source. Timings are also reported to the log under
+ * {@link #TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LookupTableInterpolatorBenchmark {
+
+    private static final String TAG = "LookupTableBenchmark";
+
+    private static final int ITERATIONS = 1000000;
+    private static final int ROUNDS = 5;
+    private static final int ACCURACY_SAMPLES = 10001;
+    private static final float MAX_ERROR = 1e-4f;
+
+    private static final Interpolator QUINTIC = new Interpolator() {
+        @Override
+        public float getInterpolation(float t) {
+            t -= 1.0f;
+            return (float) Math.pow(t, 5) + 1.0f;
+        }
+    };
+
+    private static final Interpolator SNAP_DURATION_INFLUENCE = new Interpolator() {
+        @Override
+        public float getInterpolation(float f) {
+            f -= 0.5f;
+            f *= 0.3f * Math.PI / 2.0f;
+            return (float) Math.sin(f);
+        }
+    };
+
+    @Test
+    public void quinticTableMatchesSource() {
+        assertAccurate(QUINTIC);
+    }
+
+    @Test
+    public void snapDurationInfluenceTableMatchesSource() {
+        assertAccurate(SNAP_DURATION_INFLUENCE);
+    }
+
+    @Test
+    public void benchmarkQuintic() {
+        benchmark("quintic", QUINTIC);
+    }
+
+    @Test
+    public void benchmarkSnapDurationInfluence() {
+        benchmark("snap duration influence", SNAP_DURATION_INFLUENCE);
+    }
+
+    private static void assertAccurate(Interpolator source) {
+
+        final Interpolator table = new LookupTableInterpolator(source);
+
+        float maxError = 0;
+        for (int i = 0; i < ACCURACY_SAMPLES; i++) {
+            final float input = (float) i / (ACCURACY_SAMPLES - 1);
+            maxError = Math.max(maxError, Math.abs(table.getInterpolation(input) - source.getInterpolation(input)));
+        }
+
+        assertTrue("Table off by " + maxError, maxError < MAX_ERROR);
+    }
+
+    private static void benchmark(String name, Interpolator source) {
+
+        final Interpolator table = new LookupTableInterpolator(source);
+
+        // Let the runtime compile both first
+        measure(source);
+        measure(table);
+
+        // The best of several rounds, so that a single pause does not decide the outcome
+        double sourceNanos = Double.MAX_VALUE;
+        double tableNanos = Double.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            sourceNanos = Math.min(sourceNanos, measure(source));
+            tableNanos = Math.min(tableNanos, measure(table));
+        }
+
+        Log.i(TAG, name + ": source " + sourceNanos + " ns/call, table " + tableNanos + " ns/call");
+        assertTrue(name + ": table " + tableNanos + " ns/call, source " + sourceNanos + " ns/call",
+                tableNanos < sourceNanos);
+    }
+
+    /**
+     * @return Average time of a call, in nanoseconds
+     */
+    private static double measure(Interpolator interpolator) {
+
+        float sink = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += interpolator.getInterpolation((i & 1023) / 1023f);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        // Keeps the loop from being optimized away
+        assertTrue(!Float.isNaN(sink));
+
+        return (double) elapsed / ITERATIONS;
+    }
+}
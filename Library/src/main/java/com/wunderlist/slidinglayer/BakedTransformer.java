@@ -0,0 +1,267 @@
+/*
+ * BakedTransformer.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.os.Process;
+import android.view.View;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Wraps another transformer and samples the properties it writes across the progress of the layer into a table
+ * when the layer is measured. Every frame then only looks the properties up and interpolates them, so the cost of
+ * a transformer no longer depends on how complex its math is.
+ * <p/>
+ * Both progresses of the layer derive from its position, so the table is indexed by the layer progress alone and
+ * the preview progress is worked out from the measures of the layer while sampling. Only transformers that support
+ * {@link LayerTransformer#writeProperties(LayerProperties, float, float, int)} can be baked, others transform the
+ * layer directly as if they were not wrapped.
+ * <p/>
+ * Sampling can happen on a background thread shared by all baked transformers, in which case the wrapped
+ * transformer keeps transforming the layer directly until the table is ready. Only transformers whose properties
+ * depend on nothing but the progress and the values they compute in {@link LayerTransformer#onMeasure(View, int)}
+ * can be sampled in the background. The wrapped transformer is never called from both threads at once, and a
+ * sampling the layer was measured differently during is dropped.
+ */
+public final class BakedTransformer extends LayerTransformer {
+
+    public static final int DEFAULT_RESOLUTION = 256;
+
+    private static final ExecutorService BAKE_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread("SlidingLayer-bake") {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            };
+        }
+    });
+
+    private final LayerTransformer mSource;
+    private final int mResolution;
+    private final boolean mBakeInBackground;
+
+    /**
+     * Sampled properties, {@link LayerProperties#COUNT} values per sample. Null while there is none for the current
+     * measures of the layer.
+     */
+    private volatile float[] mTable;
+    private volatile int mWrittenProperties;
+
+    /**
+     * Measures the table is sampled for
+     */
+    private Measures mMeasures;
+
+    /**
+     * Guards the wrapped transformer and how many times the layer was measured differently
+     */
+    private final Object mSourceLock = new Object();
+    private int mGeneration;
+
+    public BakedTransformer(LayerTransformer source) {
+        this(source, DEFAULT_RESOLUTION, false);
+    }
+
+    /**
+     * @param source           Transformer to sample
+     * @param resolution       Number of intervals the progress of the layer is sampled at
+     * @param bakeInBackground true to sample on a background thread rather than while measuring
+     */
+    public BakedTransformer(LayerTransformer source, int resolution, boolean bakeInBackground) {
+
+        if (resolution < 1) {
+            throw new IllegalArgumentException("The resolution has to be at least 1");
+        }
+
+        mSource = source;
+        mResolution = resolution;
+        mBakeInBackground = bakeInBackground;
+    }
+
+    @Override
+    protected void onMeasure(View layerView, int screenSide) {
+
+        final boolean horizontal = screenSide == SlidingLayer.STICK_TO_LEFT ||
+                screenSide == SlidingLayer.STICK_TO_RIGHT;
+        final int layerSize = horizontal ? layerView.getMeasuredWidth() : layerView.getMeasuredHeight();
+        final int previewOffset = layerView instanceof SlidingLayer ?
+                ((SlidingLayer) layerView).getPreviewOffsetDistance() : 0;
+
+        final Measures current = mMeasures;
+        final boolean changed = layerSize > 0 && (current == null || layerSize != current.mLayerSize ||
+                previewOffset != current.mPreviewOffset || screenSide != current.mScreenSide);
+
+        // Any sampling still running for the previous measures is dropped along with them
+        final int generation;
+        synchronized (mSourceLock) {
+            mSource.onMeasure(layerView, screenSide);
+            generation = changed ? ++mGeneration : mGeneration;
+        }
+
+        if (!changed) {
+            return;
+        }
+
+        final Measures measures = new Measures(generation, layerSize, previewOffset, screenSide);
+        mMeasures = measures;
+        mTable = null;
+
+        if (!mBakeInBackground) {
+            bake(measures);
+            return;
+        }
+
+        BAKE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                bake(measures);
+            }
+        });
+    }
+
+    private void bake(Measures measures) {
+
+        final LayerProperties properties = new LayerProperties();
+        final float[] table = new float[(mResolution + 1) * LayerProperties.COUNT];
+        int written = 0;
+
+        for (int i = 0; i <= mResolution; i++) {
+
+            final float layerProgress = (float) i / mResolution;
+            final float previewProgress = measures.mPreviewOffset > 0 ?
+                    Math.min(1, layerProgress * measures.mLayerSize / measures.mPreviewOffset) :
+                    0;
+
+            // Sampling stops as soon as the layer is measured differently, or the source turns out not to support it
+            synchronized (mSourceLock) {
+                properties.reset();
+                if (measures.mGeneration != mGeneration ||
+                        !mSource.writeProperties(properties, previewProgress, layerProgress, measures.mScreenSide)) {
+                    return;
+                }
+            }
+
+            final int row = i * LayerProperties.COUNT;
+            for (int p = 0; p < LayerProperties.COUNT; p++) {
+                table[row + p] = properties.get(p);
+                if (properties.isWritten(p)) {
+                    written |= 1 << p;
+                }
+            }
+        }
+
+        synchronized (mSourceLock) {
+            if (measures.mGeneration == mGeneration) {
+                mWrittenProperties = written;
+                mTable = table;
+            }
+        }
+    }
+
+    @Override
+    public void transform(View layerView, float previewProgress, float layerProgress) {
+    }
+
+    @Override
+    protected void internalTransform(View layerView, float previewProgress, float layerProgress, int screenSide) {
+
+        final float[] table = mTable;
+        if (table == null) {
+            synchronized (mSourceLock) {
+                mSource.internalTransform(layerView, previewProgress, layerProgress, screenSide);
+            }
+            return;
+        }
+
+        final int written = mWrittenProperties;
+        for (int p = 0; p < LayerProperties.COUNT; p++) {
+            if ((written & (1 << p)) != 0) {
+                LayerProperties.apply(layerView, p, lookUp(table, p, layerProgress));
+            }
+        }
+    }
+
+    @Override
+    protected boolean writeProperties(LayerProperties properties, float previewProgress, float layerProgress,
+                                      int screenSide) {
+
+        final float[] table = mTable;
+        if (table == null) {
+            synchronized (mSourceLock) {
+                return mSource.writeProperties(properties, previewProgress, layerProgress, screenSide);
+            }
+        }
+
+        final int written = mWrittenProperties;
+        for (int p = 0; p < LayerProperties.COUNT; p++) {
+            if ((written & (1 << p)) != 0) {
+                properties.write(p, lookUp(table, p, layerProgress));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void transformChildren(LayerChildren children, float previewProgress, float layerProgress,
+                                     int screenSide) {
+        synchronized (mSourceLock) {
+            mSource.transformChildren(children, previewProgress, layerProgress, screenSide);
+        }
+    }
+
+    private float lookUp(float[] table, int property, float layerProgress) {
+
+        final float position = Math.max(0, Math.min(1, layerProgress)) * mResolution;
+        final int index = Math.min(mResolution - 1, (int) position);
+        final float fraction = position - index;
+
+        final float value = table[index * LayerProperties.COUNT + property];
+        final float next = table[(index + 1) * LayerProperties.COUNT + property];
+        return value + (next - value) * fraction;
+    }
+
+    /**
+     * What a table is sampled from, as measured on the UI thread
+     */
+    private static final class Measures {
+
+        final int mGeneration;
+        final int mLayerSize;
+        final int mPreviewOffset;
+        final int mScreenSide;
+
+        Measures(int generation, int layerSize, int previewOffset, int screenSide) {
+            mGeneration = generation;
+            mLayerSize = layerSize;
+            mPreviewOffset = previewOffset;
+            mScreenSide = screenSide;
+        }
+    }
+}
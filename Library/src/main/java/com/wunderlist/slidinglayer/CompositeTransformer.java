@@ -0,0 +1,161 @@
+/*
+ * CompositeTransformer.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.view.View;
+
+/**
+ * Chains several transformers into one. Transformers that support it write into a shared
+ * {@link LayerProperties} buffer, where their values combine, and the buffer is then applied to the layer. A
+ * property is only set on the layer, and so the layer only invalidated, when it changed more than its epsilon since
+ * it was last set, or at all once the layer reaches one of its states. Transformers that do not write properties
+ * transform the layer directly, in order.
+ * <p/>
+ * The composite remembers the values it sets, so properties written by it must not be changed on the layer by
+ * anything else.
+ */
+public final class CompositeTransformer extends LayerTransformer {
+
+    public static final float DEFAULT_ALPHA_EPSILON = 1 / 255f;
+    public static final float DEFAULT_SCALE_EPSILON = 0.001f;
+    public static final float DEFAULT_ROTATION_EPSILON = 0.01f;
+    public static final float DEFAULT_TRANSLATION_EPSILON = 0.1f;
+
+    private final LayerTransformer[] mTransformers;
+    private final LayerProperties mProperties = new LayerProperties();
+
+    private final float[] mEpsilons = new float[LayerProperties.COUNT];
+    private final float[] mApplied = new float[LayerProperties.COUNT];
+
+    public CompositeTransformer(LayerTransformer... transformers) {
+
+        mTransformers = transformers.clone();
+
+        mEpsilons[LayerProperties.ALPHA] = DEFAULT_ALPHA_EPSILON;
+        mEpsilons[LayerProperties.SCALE_X] = mEpsilons[LayerProperties.SCALE_Y] = DEFAULT_SCALE_EPSILON;
+        mEpsilons[LayerProperties.ROTATION] = DEFAULT_ROTATION_EPSILON;
+        mEpsilons[LayerProperties.ROTATION_X] = mEpsilons[LayerProperties.ROTATION_Y] = DEFAULT_ROTATION_EPSILON;
+        mEpsilons[LayerProperties.TRANSLATION_X] = DEFAULT_TRANSLATION_EPSILON;
+        mEpsilons[LayerProperties.TRANSLATION_Y] = DEFAULT_TRANSLATION_EPSILON;
+
+        forgetAppliedValues();
+    }
+
+    /**
+     * Sets how much a property has to change before it is set on the layer again.
+     *
+     * @param property One of the {@link LayerProperties} constants
+     * @param epsilon  Smallest change applied to the layer, 0 to apply every change
+     */
+    public void setEpsilon(int property, float epsilon) {
+        mEpsilons[property] = epsilon;
+    }
+
+    public float getEpsilon(int property) {
+        return mEpsilons[property];
+    }
+
+    @Override
+    protected void onMeasure(View layerView, int screenSide) {
+        for (LayerTransformer transformer : mTransformers) {
+            transformer.onMeasure(layerView, screenSide);
+        }
+
+        // The layer might have been changed in between, apply every property again
+        forgetAppliedValues();
+    }
+
+    @Override
+    public void transform(View layerView, float previewProgress, float layerProgress) {
+    }
+
+    @Override
+    protected void internalTransform(View layerView, float previewProgress, float layerProgress, int screenSide) {
+
+        collectProperties(mProperties, previewProgress, layerProgress, screenSide, layerView);
+
+        // Changes below the epsilons are not left behind once the layer stops
+        final boolean atRest = layerProgress == 0 || layerProgress == 1 ||
+                isAtPreview(layerView, previewProgress, layerProgress, screenSide);
+
+        for (int i = 0; i < LayerProperties.COUNT; i++) {
+
+            if (!mProperties.isWritten(i)) {
+                continue;
+            }
+
+            final float value = mProperties.get(i);
+            // Values never applied are NaN, and so always changed
+            final float change = Math.abs(value - mApplied[i]);
+            if (change == 0 || change <= mEpsilons[i] && !atRest) {
+                continue;
+            }
+
+            mApplied[i] = value;
+            LayerProperties.apply(layerView, i, value);
+        }
+    }
+
+    @Override
+    protected void transformChildren(LayerChildren children, float previewProgress, float layerProgress,
+                                     int screenSide) {
+        for (LayerTransformer transformer : mTransformers) {
+            transformer.transformChildren(children, previewProgress, layerProgress, screenSide);
+        }
+    }
+
+    private void collectProperties(LayerProperties properties, float previewProgress, float layerProgress,
+                                   int screenSide, View layerView) {
+
+        properties.reset();
+
+        for (LayerTransformer transformer : mTransformers) {
+            if (!transformer.writeProperties(properties, previewProgress, layerProgress, screenSide)) {
+                transformer.internalTransform(layerView, previewProgress, layerProgress, screenSide);
+            }
+        }
+    }
+
+    /**
+     * The preview progress stays at 1 past the preview offset, only the offset itself is where the layer rests.
+     */
+    private static boolean isAtPreview(View layerView, float previewProgress, float layerProgress, int screenSide) {
+
+        if (previewProgress != 1 || !(layerView instanceof SlidingLayer)) {
+            return false;
+        }
+
+        final boolean horizontal = screenSide == SlidingLayer.STICK_TO_LEFT ||
+                screenSide == SlidingLayer.STICK_TO_RIGHT;
+        final int layerSize = horizontal ? layerView.getMeasuredWidth() : layerView.getMeasuredHeight();
+
+        return Math.round(layerProgress * layerSize) == ((SlidingLayer) layerView).getPreviewOffsetDistance();
+    }
+
+    private void forgetAppliedValues() {
+        for (int i = 0; i < LayerProperties.COUNT; i++) {
+            mApplied[i] = Float.NaN;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * DurationSettleEngine.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.view.animation.Interpolator;
+
+/**
+ * Default animation of the layer: moves it to its target along an interpolated curve of a fixed duration. Time
+ * only advances with the frames it is stepped with, so the animation follows the frame clock of the layer.
+ * <p/>
+ * When started with a velocity, the curve is corrected so that it starts at that velocity: the difference with the
+ * initial velocity of the curve is carried by a term that fades out along the animation and is gone, along with its
+ * own velocity, by its end. Retargeting an animation in flight therefore keeps the layer moving as it was.
+ */
+final class DurationSettleEngine extends SettleEngine {
+
+    // Fraction of the animation used to estimate its velocity
+    private static final float VELOCITY_SAMPLE = 0.01f;
+
+    private Interpolator mInterpolator;
+    private float mDuration;
+
+    private float mStart;
+    private float mElapsed;
+
+    /**
+     * Initial velocity of the animation minus that of the curve, in pixels per second
+     */
+    private float mVelocityCorrection;
+
+    DurationSettleEngine(Interpolator interpolator) {
+        mInterpolator = interpolator;
+    }
+
+    void setInterpolator(Interpolator interpolator) {
+        mInterpolator = interpolator;
+    }
+
+    /**
+     * Sets the duration of the next animation.
+     *
+     * @param durationNanos Duration of the animation, in nanoseconds
+     */
+    void setDuration(long durationNanos) {
+        mDuration = durationNanos / 1000000000f;
+    }
+
+    @Override
+    protected void onStart() {
+        mStart = mPosition;
+        mElapsed = 0;
+
+        if (mVelocity != 0 && mDuration > 0) {
+            final float curveSlope = mInterpolator.getInterpolation(VELOCITY_SAMPLE) / VELOCITY_SAMPLE;
+            mVelocityCorrection = mVelocity - (mTarget - mStart) * curveSlope / mDuration;
+        } else {
+            mVelocityCorrection = 0;
+        }
+    }
+
+    @Override
+    protected boolean onStep(float deltaTime) {
+
+        mElapsed += deltaTime;
+
+        final float fraction = mDuration > 0 ? Math.min(1, mElapsed / mDuration) : 1;
+        final float distance = mTarget - mStart;
+        final float interpolation = mInterpolator.getInterpolation(fraction);
+        final float previousInterpolation = mInterpolator.getInterpolation(Math.max(0, fraction - VELOCITY_SAMPLE));
+
+        mPosition = mStart + distance * interpolation;
+        mVelocity = mDuration > 0 ?
+                distance * (interpolation - previousInterpolation) / (VELOCITY_SAMPLE * mDuration) :
+                0;
+
+        if (mVelocityCorrection != 0) {
+            // t (1 - t)^2 starts with a slope of 1, and ends at 0 with no slope
+            final float remaining = 1 - fraction;
+            mPosition += mVelocityCorrection * mDuration * fraction * remaining * remaining;
+            mVelocity += mVelocityCorrection * remaining * (remaining - 2 * fraction);
+        }
+
+        return fraction >= 1;
+    }
+}
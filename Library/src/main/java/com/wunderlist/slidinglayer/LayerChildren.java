@@ -0,0 +1,145 @@
+/*
+ * LayerChildren.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Descendants of the layer tagged to be transformed along with it, resolved by the layer once per layout into
+ * flat arrays so that transformers never have to look them up or walk the hierarchy while the layer moves.
+ * <p/>
+ * A descendant is picked up when it has a {@link R.id#slidingLayerChildFactor} tag, and can have a
+ * {@link R.id#slidingLayerChildDelay} tag as well. What both mean is up to the transformer, see
+ * {@link com.wunderlist.slidinglayer.transformer.ParallaxTransformer}. Tags are set with
+ * {@link View#setTag(int, Object)} before the layer is laid out:
+ * <pre>
+ * textView.setTag(R.id.slidingLayerChildFactor, 0.4f);
+ * button.setTag(R.id.slidingLayerChildFactor, 0.2f);
+ * button.setTag(R.id.slidingLayerChildDelay, 0.5f);
+ * </pre>
+ * Tags can be numbers, or strings holding numbers. Strings are what the <code>&lt;tag&gt;</code> layout element
+ * sets, but layouts only parse that element from Lollipop on.
+ *
+ * @see LayerTransformer#transformChildren(LayerChildren, float, float, int)
+ */
+public final class LayerChildren {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private View[] mViews = new View[INITIAL_CAPACITY];
+    private float[] mFactors = new float[INITIAL_CAPACITY];
+    private float[] mDelays = new float[INITIAL_CAPACITY];
+    private int mCount;
+
+    /**
+     * @return Number of tagged descendants
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    public View getChildAt(int index) {
+        return mViews[index];
+    }
+
+    public float getFactor(int index) {
+        return mFactors[index];
+    }
+
+    /**
+     * @return The delay of the descendant, 0 if it has none
+     */
+    public float getDelay(int index) {
+        return mDelays[index];
+    }
+
+    /**
+     * Collect the tagged descendants of the layer, replacing the ones collected before. Arrays are only reallocated
+     * when they grow.
+     */
+    void resolve(ViewGroup layer) {
+
+        for (int i = 0; i < mCount; i++) {
+            mViews[i] = null;
+        }
+        mCount = 0;
+
+        collect(layer);
+    }
+
+    private void collect(ViewGroup parent) {
+
+        final int childCount = parent.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+
+            final View child = parent.getChildAt(i);
+
+            final Object factor = child.getTag(R.id.slidingLayerChildFactor);
+            if (factor != null) {
+                add(child, toFloat(factor), toFloat(child.getTag(R.id.slidingLayerChildDelay)));
+            }
+
+            if (child instanceof ViewGroup) {
+                collect((ViewGroup) child);
+            }
+        }
+    }
+
+    private void add(View view, float factor, float delay) {
+
+        if (mCount == mViews.length) {
+            final int capacity = mCount * 2;
+            final View[] views = new View[capacity];
+            final float[] factors = new float[capacity];
+            final float[] delays = new float[capacity];
+            System.arraycopy(mViews, 0, views, 0, mCount);
+            System.arraycopy(mFactors, 0, factors, 0, mCount);
+            System.arraycopy(mDelays, 0, delays, 0, mCount);
+            mViews = views;
+            mFactors = factors;
+            mDelays = delays;
+        }
+
+        mViews[mCount] = view;
+        mFactors[mCount] = factor;
+        mDelays[mCount] = delay;
+        mCount++;
+    }
+
+    private static float toFloat(Object tag) {
+
+        if (tag == null) {
+            return 0;
+        } else if (tag instanceof Number) {
+            return ((Number) tag).floatValue();
+        }
+
+        try {
+            return Float.parseFloat(tag.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Layer child tags must be numbers, found: " + tag);
+        }
+    }
+}
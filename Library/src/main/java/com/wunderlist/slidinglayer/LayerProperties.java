@@ -0,0 +1,169 @@
+/*
+ * LayerProperties.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.view.View;
+
+/**
+ * Buffer of the view properties of the layer that several transformers write into before they are applied at
+ * once. Writes combine: alpha and scale multiply, rotation and translation add up.
+ *
+ * @see LayerTransformer#writeProperties(LayerProperties, float, float, int)
+ */
+public final class LayerProperties {
+
+    public static final int ALPHA = 0;
+    public static final int SCALE_X = 1;
+    public static final int SCALE_Y = 2;
+    public static final int ROTATION = 3;
+    public static final int ROTATION_X = 4;
+    public static final int ROTATION_Y = 5;
+    public static final int TRANSLATION_X = 6;
+    public static final int TRANSLATION_Y = 7;
+
+    /**
+     * Number of properties in the buffer
+     */
+    public static final int COUNT = 8;
+
+    private final float[] mValues = new float[COUNT];
+    private int mWritten;
+
+    public LayerProperties() {
+        reset();
+    }
+
+    /**
+     * Bring every property back to its identity value and mark it as not written.
+     */
+    public void reset() {
+        for (int i = 0; i < COUNT; i++) {
+            mValues[i] = isMultiplicative(i) ? 1 : 0;
+        }
+        mWritten = 0;
+    }
+
+    public void multiplyAlpha(float alpha) {
+        multiply(ALPHA, alpha);
+    }
+
+    public void multiplyScale(float scaleX, float scaleY) {
+        multiply(SCALE_X, scaleX);
+        multiply(SCALE_Y, scaleY);
+    }
+
+    public void addRotation(float rotation) {
+        add(ROTATION, rotation);
+    }
+
+    public void addRotationX(float rotationX) {
+        add(ROTATION_X, rotationX);
+    }
+
+    public void addRotationY(float rotationY) {
+        add(ROTATION_Y, rotationY);
+    }
+
+    public void addTranslation(float translationX, float translationY) {
+        add(TRANSLATION_X, translationX);
+        add(TRANSLATION_Y, translationY);
+    }
+
+    /**
+     * Combine a value into a property, multiplying or adding it as the property requires.
+     *
+     * @param property One of the property constants
+     * @param value    Value to combine
+     */
+    public void write(int property, float value) {
+        if (isMultiplicative(property)) {
+            multiply(property, value);
+        } else {
+            add(property, value);
+        }
+    }
+
+    /**
+     * @param property One of the property constants
+     * @return The combined value of the property
+     */
+    public float get(int property) {
+        return mValues[property];
+    }
+
+    /**
+     * @param property One of the property constants
+     * @return true if the property has been written since the buffer was last reset
+     */
+    public boolean isWritten(int property) {
+        return (mWritten & (1 << property)) != 0;
+    }
+
+    /**
+     * Set a single property on the layer.
+     */
+    static void apply(View layerView, int property, float value) {
+
+        switch (property) {
+        case ALPHA:
+            layerView.setAlpha(value);
+            break;
+        case SCALE_X:
+            layerView.setScaleX(value);
+            break;
+        case SCALE_Y:
+            layerView.setScaleY(value);
+            break;
+        case ROTATION:
+            layerView.setRotation(value);
+            break;
+        case ROTATION_X:
+            layerView.setRotationX(value);
+            break;
+        case ROTATION_Y:
+            layerView.setRotationY(value);
+            break;
+        case TRANSLATION_X:
+            layerView.setTranslationX(value);
+            break;
+        case TRANSLATION_Y:
+            layerView.setTranslationY(value);
+            break;
+        }
+    }
+
+    private void multiply(int property, float value) {
+        mValues[property] *= value;
+        mWritten |= 1 << property;
+    }
+
+    private void add(int property, float value) {
+        mValues[property] += value;
+        mWritten |= 1 << property;
+    }
+
+    private static boolean isMultiplicative(int property) {
+        return property == ALPHA || property == SCALE_X || property == SCALE_Y;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * LayerScrim.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.MotionEvent;
+import android.view.TouchDelegate;
+import android.view.ViewGroup;
+
+/**
+ * Dims the parent of the layer around it as the layer opens. The scrim is a drawable added to the overlay of the
+ * parent, so it is drawn in the same pass as the parent without any view or listener of its own, and it is only
+ * drawn around the visible part of the layer so nothing is painted twice. Overlays need Jelly Bean MR2, the scrim
+ * is not drawn before.
+ * <p/>
+ * Taps on the scrim close the layer. A {@link SlidingLayerHost} takes them before any of its children. Other parents
+ * hand them to the scrim as their touch delegate, which only gets the touches none of their children handled, so
+ * taps on clickable views under the scrim go to those views. The scrims of several layers in the same parent chain
+ * their delegates, along with any delegate the parent already had.
+ */
+final class LayerScrim extends Drawable {
+
+    private final SlidingLayer mLayer;
+    private final Paint mPaint = new Paint();
+    private final TapDelegate mTapDelegate;
+
+    private ViewGroup mHost;
+    private int mColor;
+
+    // Current state, in the coordinates of the parent
+    private final Rect mLayerRect = new Rect();
+    private int mAlpha;
+
+    LayerScrim(SlidingLayer layer) {
+        mLayer = layer;
+        mTapDelegate = new TapDelegate();
+    }
+
+    void setColor(int color) {
+        mColor = color;
+        mPaint.setColor(color);
+        invalidateSelf();
+    }
+
+    int getColor() {
+        return mColor;
+    }
+
+    /**
+     * Start drawing on the given parent of the layer and taking its unhandled touches.
+     */
+    void attach(ViewGroup host) {
+
+        if (host == mHost) {
+            return;
+        }
+
+        detach();
+        mHost = host;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            host.getOverlay().add(this);
+        }
+
+        // Hosts take the taps themselves
+        if (!(host instanceof SlidingLayerHost)) {
+            mTapDelegate.mPrevious = host.getTouchDelegate();
+            host.setTouchDelegate(mTapDelegate);
+        }
+    }
+
+    void detach() {
+
+        if (mHost == null) {
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            mHost.getOverlay().remove(this);
+        }
+        unlinkTapDelegate();
+        mHost = null;
+    }
+
+    /**
+     * Take the delegate of this scrim out of the chain of the parent, wherever it is in it.
+     */
+    private void unlinkTapDelegate() {
+
+        final TouchDelegate current = mHost.getTouchDelegate();
+        if (current == mTapDelegate) {
+            mHost.setTouchDelegate(mTapDelegate.mPrevious);
+        } else {
+            TouchDelegate delegate = current;
+            while (delegate instanceof TapDelegate) {
+                final TapDelegate tapDelegate = (TapDelegate) delegate;
+                if (tapDelegate.mPrevious == mTapDelegate) {
+                    tapDelegate.mPrevious = mTapDelegate.mPrevious;
+                    break;
+                }
+                delegate = tapDelegate.mPrevious;
+            }
+        }
+        mTapDelegate.mPrevious = null;
+    }
+
+    /**
+     * @param x Horizontal position, in the coordinates of the parent
+     * @param y Vertical position, in the coordinates of the parent
+     * @return true if the scrim is drawn at the given position
+     */
+    boolean isOnScrim(float x, float y) {
+        return mHost != null && !mLayer.isClosed() && !mLayerRect.contains((int) x, (int) y);
+    }
+
+    /**
+     * Follow the layer. The parent is only invalidated when the scrim actually changed.
+     *
+     * @param progress How much the layer is open [0 - 1]
+     * @param left     Visible bounds of the layer, in the coordinates of the parent
+     */
+    void update(float progress, int left, int top, int right, int bottom) {
+
+        if (mHost == null) {
+            return;
+        }
+
+        final int alpha = Math.round(Color.alpha(mColor) * Math.max(0, Math.min(1, progress)));
+        final Rect bounds = getBounds();
+        final boolean resized = bounds.right != mHost.getWidth() || bounds.bottom != mHost.getHeight();
+
+        if (alpha == mAlpha && !resized && left == mLayerRect.left && top == mLayerRect.top &&
+                right == mLayerRect.right && bottom == mLayerRect.bottom) {
+            return;
+        }
+
+        mAlpha = alpha;
+        mLayerRect.set(left, top, right, bottom);
+        if (resized) {
+            setBounds(0, 0, mHost.getWidth(), mHost.getHeight());
+        }
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+
+        if (mAlpha == 0) {
+            return;
+        }
+
+        mPaint.setColor(mColor);
+        mPaint.setAlpha(mAlpha);
+
+        // Up to four bands around the layer instead of a clip
+        final Rect bounds = getBounds();
+        final Rect layer = mLayerRect;
+        drawBand(canvas, bounds.left, bounds.top, bounds.right, layer.top);
+        drawBand(canvas, bounds.left, layer.bottom, bounds.right, bounds.bottom);
+        drawBand(canvas, bounds.left, Math.max(bounds.top, layer.top), layer.left,
+                Math.min(bounds.bottom, layer.bottom));
+        drawBand(canvas, layer.right, Math.max(bounds.top, layer.top), bounds.right,
+                Math.min(bounds.bottom, layer.bottom));
+    }
+
+    private void drawBand(Canvas canvas, int left, int top, int right, int bottom) {
+        if (left < right && top < bottom) {
+            canvas.drawRect(left, top, right, bottom, mPaint);
+        }
+    }
+
+    /**
+     * The alpha of the scrim follows the layer, use the alpha of its color instead.
+     */
+    @Override
+    public void setAlpha(int alpha) {
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter cf) {
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    private class TapDelegate extends TouchDelegate {
+
+        /**
+         * Delegate the parent had before this one, which gets the touches that do not land on the scrim
+         */
+        TouchDelegate mPrevious;
+
+        private boolean mTracking;
+        private boolean mForwarding;
+
+        TapDelegate() {
+            super(mLayerRect, mLayer);
+        }
+
+        @Override
+        public boolean onTouchEvent(MotionEvent event) {
+
+            final int action = event.getAction() & MotionEvent.ACTION_MASK;
+            final boolean onScrim = isOnScrim(event.getX(), event.getY());
+
+            if (action == MotionEvent.ACTION_DOWN) {
+                mForwarding = !onScrim && mPrevious != null;
+            }
+            if (mForwarding) {
+                return mPrevious != null && mPrevious.onTouchEvent(event);
+            }
+
+            switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mTracking = onScrim;
+                return mTracking;
+
+            case MotionEvent.ACTION_MOVE:
+                return mTracking;
+
+            case MotionEvent.ACTION_UP:
+                if (mTracking && onScrim) {
+                    mLayer.closeLayer(true);
+                }
+                final boolean handled = mTracking;
+                mTracking = false;
+                return handled;
+
+            case MotionEvent.ACTION_CANCEL:
+                mTracking = false;
+                return false;
+            }
+
+            return mTracking;
+        }
+    }
+}
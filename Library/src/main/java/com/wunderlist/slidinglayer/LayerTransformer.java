@@ -55,6 +55,36 @@ public abstract class LayerTransformer {
         transform(layerView, previewProgress, layerProgress);
     }
 
+    /**
+     * Transform the tagged descendants of the layer. Executed right after the layer itself has been transformed,
+     * as long as it has any such descendant.
+     *
+     * @param children        The tagged descendants of the layer, resolved on its last layout
+     * @param previewProgress The progress of the layer relative to the preview mode [0 - 1]. 0 fixed if no preview
+     * @param layerProgress   The progress of the layer relative to its total size [0 - 1]
+     * @param screenSide      Side of the screen where the layer is stuck to
+     */
+    protected void transformChildren(LayerChildren children, float previewProgress, float layerProgress,
+                                     int screenSide) {
+    }
+
+    /**
+     * Write the properties of the layer for the given progress into a buffer shared with other transformers instead
+     * of setting them on the layer, see {@link CompositeTransformer}. Pivots are still set on the layer, in
+     * {@link #onMeasure(View, int)}.
+     *
+     * @param properties      The buffer to combine the properties into
+     * @param previewProgress The progress of the layer relative to the preview mode [0 - 1]. 0 fixed if no preview
+     * @param layerProgress   The progress of the layer relative to its total size [0 - 1]
+     * @param screenSide      Side of the screen where the layer is stuck to
+     * @return true if the properties were written, false if the transformer can only transform the layer directly.
+     * The buffer must not be modified when returning false.
+     */
+    protected boolean writeProperties(LayerProperties properties, float previewProgress, float layerProgress,
+                                      int screenSide) {
+        return false;
+    }
+
     /**
      * Apply a property transformation to layer based on its scrolling state for the total size of the layer
      * and preview mode.
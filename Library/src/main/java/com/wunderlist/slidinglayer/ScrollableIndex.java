@@ -0,0 +1,202 @@
+/*
+ * ScrollableIndex.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.support.v4.view.ScrollingView;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Flat index of the descendants of the layer that scroll, built once per layout, so that finding out whether a touch
+ * lands on something that can scroll does not walk the hierarchy.
+ * <p/>
+ * Descendants are indexed when they are scroll containers or can scroll at the time the index is built. Changes of
+ * their content that make them scrollable also lay them out, which builds the index again. Entries are stored
+ * ancestors first, each with its bounds relative to the content of its closest indexed ancestor, so that only the
+ * scroll of indexed descendants has to be read when testing a touch. Like the recursive test it replaces, the
+ * transformation properties of the descendants are not taken into account.
+ */
+final class ScrollableIndex {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private View[] mViews = new View[INITIAL_CAPACITY];
+
+    /**
+     * Index of the closest indexed ancestor of each entry, -1 for the layer itself
+     */
+    private int[] mParents = new int[INITIAL_CAPACITY];
+    private int[] mLefts = new int[INITIAL_CAPACITY];
+    private int[] mTops = new int[INITIAL_CAPACITY];
+    private int[] mWidths = new int[INITIAL_CAPACITY];
+    private int[] mHeights = new int[INITIAL_CAPACITY];
+    private int mCount;
+
+    // Working state of a hit test, the position of each entry in the content of the layer
+    private int[] mHitLefts = new int[INITIAL_CAPACITY];
+    private int[] mHitTops = new int[INITIAL_CAPACITY];
+    private boolean[] mHits = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * Index the scrollable descendants of the layer, replacing the ones indexed before.
+     */
+    void rebuild(ViewGroup layer) {
+
+        for (int i = 0; i < mCount; i++) {
+            mViews[i] = null;
+        }
+        mCount = 0;
+
+        collect(layer, -1, 0, 0);
+    }
+
+    /**
+     * @param parent   Closest indexed ancestor of the group
+     * @param contentX Horizontal position of the content of the group within that of the ancestor
+     * @param contentY Vertical position of the content of the group within that of the ancestor
+     */
+    private void collect(ViewGroup group, int parent, int contentX, int contentY) {
+
+        final int childCount = group.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+
+            final View child = group.getChildAt(i);
+            if (child.getVisibility() != View.VISIBLE) {
+                continue;
+            }
+
+            final int left = contentX + child.getLeft();
+            final int top = contentY + child.getTop();
+
+            if (isScrollable(child)) {
+                final int entry = add(child, parent, left, top);
+                if (child instanceof ViewGroup) {
+                    collect((ViewGroup) child, entry, 0, 0);
+                }
+            } else if (child instanceof ViewGroup) {
+                // Not scrolling now, its scroll can be taken as fixed
+                collect((ViewGroup) child, parent, left - child.getScrollX(), top - child.getScrollY());
+            }
+        }
+    }
+
+    private static boolean isScrollable(View view) {
+        return view.isScrollContainer() || view instanceof ScrollingView ||
+                ViewCompat.canScrollHorizontally(view, -1) || ViewCompat.canScrollHorizontally(view, 1) ||
+                ViewCompat.canScrollVertically(view, -1) || ViewCompat.canScrollVertically(view, 1);
+    }
+
+    private int add(View view, int parent, int left, int top) {
+
+        if (mCount == mViews.length) {
+            grow(mCount * 2);
+        }
+
+        final int entry = mCount++;
+        mViews[entry] = view;
+        mParents[entry] = parent;
+        mLefts[entry] = left;
+        mTops[entry] = top;
+        mWidths[entry] = view.getWidth();
+        mHeights[entry] = view.getHeight();
+        return entry;
+    }
+
+    private void grow(int capacity) {
+        mViews = copyOf(mViews, capacity);
+        mParents = copyOf(mParents, capacity);
+        mLefts = copyOf(mLefts, capacity);
+        mTops = copyOf(mTops, capacity);
+        mWidths = copyOf(mWidths, capacity);
+        mHeights = copyOf(mHeights, capacity);
+        mHitLefts = new int[capacity];
+        mHitTops = new int[capacity];
+        mHits = new boolean[capacity];
+    }
+
+    private static View[] copyOf(View[] array, int capacity) {
+        final View[] copy = new View[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        final int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    /**
+     * @return Number of indexed descendants
+     */
+    int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Tell whether an indexed descendant under the given point can scroll in the given direction.
+     *
+     * @param x          Horizontal position of the point in the content of the layer
+     * @param y          Vertical position of the point in the content of the layer
+     * @param horizontal true to test horizontal scrolling, false for vertical
+     * @param direction  Negative to test scrolling towards the start, positive towards the end
+     */
+    boolean canScrollAt(int x, int y, boolean horizontal, int direction) {
+
+        for (int i = 0; i < mCount; i++) {
+
+            final int parent = mParents[i];
+            int left = mLefts[i];
+            int top = mTops[i];
+
+            if (parent >= 0) {
+                // Outside of its ancestor, it cannot be under the point either
+                if (!mHits[parent]) {
+                    mHits[i] = false;
+                    continue;
+                }
+                final View parentView = mViews[parent];
+                left += mHitLefts[parent] - parentView.getScrollX();
+                top += mHitTops[parent] - parentView.getScrollY();
+            }
+
+            mHitLefts[i] = left;
+            mHitTops[i] = top;
+            mHits[i] = x >= left && x < left + mWidths[i] && y >= top && y < top + mHeights[i];
+
+            if (mHits[i]) {
+                final View view = mViews[i];
+                final boolean canScroll = horizontal ?
+                        ViewCompat.canScrollHorizontally(view, direction) :
+                        ViewCompat.canScrollVertically(view, direction);
+                if (canScroll && view.isShown()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
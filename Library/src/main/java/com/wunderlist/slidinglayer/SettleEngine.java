@@ -0,0 +1,138 @@
+/*
+ * SettleEngine.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+/**
+ * Physics model used to settle the layer into its destination once it has been released or asked to change its
+ * state. Unlike a duration based animation, an engine starts from the position and velocity the layer has at
+ * release time and is stepped with the real time elapsed between frames, so no allocation happens while it runs.
+ * <p/>
+ * Positions are expressed along the sliding axis of the layer, in the same coordinate space as its scroll.
+ */
+public abstract class SettleEngine {
+
+    /**
+     * Distance to the target, in pixels, under which the layer is considered to be settled.
+     */
+    protected static final float REST_DISTANCE = 0.5f;
+
+    /**
+     * Velocity, in pixels per second, under which the layer is considered to be settled.
+     */
+    protected static final float REST_VELOCITY = 20f;
+
+    protected float mPosition;
+    protected float mVelocity;
+    protected float mTarget;
+
+    private boolean mFinished = true;
+
+    /**
+     * Start settling the layer towards a destination.
+     *
+     * @param position Current position of the layer
+     * @param velocity Current velocity of the layer in pixels per second
+     * @param target   Position where the layer has to come to rest
+     */
+    public final void start(float position, float velocity, float target) {
+        mPosition = position;
+        mVelocity = velocity;
+        mTarget = target;
+        mFinished = false;
+        onStart();
+    }
+
+    /**
+     * Advance the simulation. Call this when you want to know the new location.
+     *
+     * @param deltaTime Time elapsed since the previous step, in seconds
+     * @return true if the animation has not finished yet. The last step of the animation, the one that brings the
+     * layer to its target, also returns true.
+     */
+    public final boolean computeOffset(float deltaTime) {
+
+        if (mFinished) {
+            return false;
+        }
+
+        if (deltaTime > 0 && onStep(deltaTime)) {
+            abortAnimation();
+        }
+        return true;
+    }
+
+    /**
+     * Stops the animation. Contrary to {@link #forceFinished(boolean)}, aborting the animation causes the layer to
+     * move to its final position.
+     */
+    public final void abortAnimation() {
+        mPosition = mTarget;
+        mVelocity = 0;
+        mFinished = true;
+    }
+
+    /**
+     * Force the finished field to a particular value, leaving the layer where it currently is.
+     *
+     * @param finished The new finished value
+     */
+    public final void forceFinished(boolean finished) {
+        mFinished = finished;
+    }
+
+    public final boolean isFinished() {
+        return mFinished;
+    }
+
+    public final float getCurrPosition() {
+        return mPosition;
+    }
+
+    /**
+     * @return The current velocity of the layer in pixels per second
+     */
+    public final float getCurrVelocity() {
+        return mVelocity;
+    }
+
+    public final float getFinalPosition() {
+        return mTarget;
+    }
+
+    /**
+     * Executed every time a new animation starts, once position, velocity and target have been set. Use it to
+     * calculate any value that stays constant during the animation.
+     */
+    protected void onStart() {
+    }
+
+    /**
+     * Integrate position and velocity over the given amount of time. This method runs on every frame, it must not
+     * allocate.
+     *
+     * @param deltaTime Time elapsed since the previous step, in seconds. Always greater than 0
+     * @return true once the layer has come to rest at its target
+     */
+    protected abstract boolean onStep(float deltaTime);
+}
@@ -0,0 +1,85 @@
+/*
+ * ShadowCache.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+
+/**
+ * Strip of the shadow of the layer rasterized into a bitmap, so that drawing the shadow on every frame comes down
+ * to a single bitmap blit. The strip is drawn again when its size changes or when it is invalidated.
+ */
+final class ShadowCache {
+
+    private final Canvas mCanvas = new Canvas();
+    private Bitmap mBitmap;
+    private boolean mValid;
+
+    /**
+     * Draw the shadow into the strip again before it is next drawn.
+     */
+    void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Draw the strip within the given bounds, rasterizing the shadow first if needed.
+     */
+    void draw(Canvas canvas, Drawable shadow, int left, int top, int right, int bottom) {
+
+        final int width = right - left;
+        final int height = bottom - top;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            release();
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        if (!mValid) {
+            mBitmap.eraseColor(Color.TRANSPARENT);
+            mCanvas.setBitmap(mBitmap);
+            shadow.setBounds(0, 0, width, height);
+            shadow.draw(mCanvas);
+            mValid = true;
+        }
+
+        canvas.drawBitmap(mBitmap, left, top, null);
+    }
+
+    /**
+     * Free the strip, it is created again when next drawn.
+     */
+    void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        mValid = false;
+    }
+}
@@ -27,30 +27,42 @@ import java.util.Random;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Outline;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.v4.view.MotionEventCompat;
-import android.support.v4.view.VelocityTrackerCompat;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewConfigurationCompat;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewOutlineProvider;
+import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
 import android.widget.FrameLayout;
 import android.widget.RelativeLayout;
-import android.widget.Scroller;
 
+import com.wunderlist.slidinglayer.settle.DecaySettleEngine;
+import com.wunderlist.slidinglayer.settle.SpringSettleEngine;
+import com.wunderlist.slidinglayer.utils.BitmapPool;
+import com.wunderlist.slidinglayer.utils.FrameClock;
+import com.wunderlist.slidinglayer.utils.LookupTableInterpolator;
+import com.wunderlist.slidinglayer.utils.VelocityEstimator;
 
-public class SlidingLayer extends FrameLayout {
+
+public class SlidingLayer extends FrameLayout implements NestedScrollingParent {
 
     private static final String STATE_KEY = "state";
 
@@ -83,32 +95,193 @@ public class SlidingLayer extends FrameLayout {
     private static final int HORIZONTAL = 0;
     private static final int VERTICAL = 1;
 
+    /**
+     * Values of the settleEngine XML attribute
+     */
+    private static final int SETTLE_ENGINE_DURATION = 0;
+    private static final int SETTLE_ENGINE_SPRING = 1;
+    private static final int SETTLE_ENGINE_DECAY = 2;
+
+    /**
+     * Policy for the hardware layer of the view. LAYER_TYPE_POLICY_ALWAYS keeps it for as long as the view lives,
+     * which is the default.
+     */
+    public static final int LAYER_TYPE_POLICY_ALWAYS = 0;
+
+    /**
+     * Policy for the hardware layer of the view. LAYER_TYPE_POLICY_WHILE_MOVING only keeps it while the layer is
+     * being dragged or settled, freeing its texture while the layer is idle.
+     */
+    public static final int LAYER_TYPE_POLICY_WHILE_MOVING = 1;
+
+    /**
+     * Policy for the hardware layer of the view. LAYER_TYPE_POLICY_WHILE_TRANSFORMING only keeps it while the layer
+     * moves with a {@link LayerTransformer} set, which is when changes of its properties benefit from it the most.
+     */
+    public static final int LAYER_TYPE_POLICY_WHILE_TRANSFORMING = 2;
+
+    /**
+     * Policy for the hardware layer of the view. LAYER_TYPE_POLICY_NEVER does not use one.
+     */
+    public static final int LAYER_TYPE_POLICY_NEVER = 3;
+
+    /**
+     * Shadow mode. SHADOW_MODE_DRAWABLE draws the shadow drawable on every frame, which is the default.
+     */
+    public static final int SHADOW_MODE_DRAWABLE = 0;
+
+    /**
+     * Shadow mode. SHADOW_MODE_CACHED rasterizes the shadow drawable into a strip once, and draws the strip on every
+     * frame with a single bitmap blit.
+     */
+    public static final int SHADOW_MODE_CACHED = 1;
+
+    /**
+     * Shadow mode. SHADOW_MODE_ELEVATION casts the shadow from the elevation of the layer, drawn by the render thread
+     * with no drawing on the UI thread. The elevation is the size of the shadow and no shadow drawable is needed.
+     * Requires Lollipop or above, earlier releases fall back to {@link #SHADOW_MODE_DRAWABLE}.
+     */
+    public static final int SHADOW_MODE_ELEVATION = 2;
+
+    /**
+     * Drag region. DRAG_REGION_ANYWHERE lets the layer be dragged from any point of it, which is the default.
+     */
+    public static final int DRAG_REGION_ANYWHERE = 0;
+
+    /**
+     * Drag region. DRAG_REGION_EDGE only lets the layer be dragged from a band along the edge it comes in with.
+     *
+     * @see #setDragEdgeSize(int)
+     */
+    public static final int DRAG_REGION_EDGE = 1;
+
+    /**
+     * Drag region. DRAG_REGION_HANDLE only lets the layer be dragged from a handle view within it.
+     *
+     * @see #setDragHandle(View)
+     */
+    public static final int DRAG_REGION_HANDLE = 2;
+
+    /**
+     * Drag region. DRAG_REGION_OFFSET only lets the layer be dragged from the strip that sticks out when it is
+     * closed, as given by its offset distance.
+     */
+    public static final int DRAG_REGION_OFFSET = 3;
+
+    private static final int DEFAULT_DRAG_EDGE_SIZE = 24; // dp
+
     private static final int HIGH_VELOCITY = 9000;
     private static final int MAX_SCROLLING_DURATION = 600; // in ms
     private static final int MIN_DISTANCE_FOR_FLING = 10; // in dip
-    private static final Interpolator sMenuInterpolator = new Interpolator() {
+    private static final Interpolator sMenuInterpolator = new LookupTableInterpolator(new Interpolator() {
         @Override
         public float getInterpolation(float t) {
             t -= 1.0f;
             return (float) Math.pow(t, 5) + 1.0f;
         }
-    };
+    });
+
+    // We want the duration of the page snap animation to be influenced by the
+    // distance that
+    // the screen has to travel, however, we don't want this duration to be
+    // effected in a
+    // purely linear fashion. Instead, we use this function to moderate the effect
+    // that the distance
+    // of travel has on the overall snap duration.
+    private static final Interpolator sSnapDurationInfluence = new LookupTableInterpolator(new Interpolator() {
+        @Override
+        public float getInterpolation(float f) {
+            f -= 0.5f; // center the values about 0.
+            f *= 0.3f * Math.PI / 2.0f;
+            return (float) Math.sin(f);
+        }
+    });
 
     /**
      * Sentinel value for no current active pointer. Used by {@link #mActivePointerId}.
      */
     private static final int INVALID_VALUE = -1;
     protected int mActivePointerId = INVALID_VALUE;
-    protected VelocityTracker mVelocityTracker;
+    protected final VelocityEstimator mVelocityEstimator = new VelocityEstimator();
     protected int mMaximumVelocity;
 
     private Random mRandom;
     protected Bundle mState;
 
-    private Scroller mScroller;
+    private Interpolator mInterpolator = sMenuInterpolator;
+    private DurationSettleEngine mDurationSettleEngine;
+
+    /**
+     * Optional physics based animation used instead of {@link #mDurationSettleEngine}
+     */
+    private SettleEngine mSettleEngine;
+
+    /**
+     * Engine running the current animation, stepped on every frame of {@link #mFrameClock}
+     */
+    private SettleEngine mActiveSettleEngine;
+    private FrameClock mFrameClock;
+    private long mLastFrameTimeNanos;
+    private final FrameClock.Callback mFrameCallback = new FrameClock.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            computeSettleFrame(frameTimeNanos);
+        }
+    };
+
+    /**
+     * Touch prediction: the layer is shown where the finger is expected to be when the frame is displayed, while
+     * the drag itself keeps following the reported touches
+     */
+    private boolean mTouchPredictionEnabled;
+    private float mTouchPredictionLookAhead = INVALID_VALUE;
+    private float mDragScrollX;
+    private float mDragScrollY;
+
+    private final int[] mDestScrollPos = new int[2];
+
+    /**
+     * Tagged descendants handed to the transformer, resolved on every layout
+     */
+    private final LayerChildren mLayerChildren = new LayerChildren();
+
+    /**
+     * Scrollable descendants, indexed on every layout. Whether the one under the touch can scroll is kept for the
+     * rest of the gesture once known for each direction, towards the start and towards the end.
+     */
+    private final ScrollableIndex mScrollableIndex = new ScrollableIndex();
+    private int mDescendantScrollsBackward = INVALID_VALUE;
+    private int mDescendantScrollsForward = INVALID_VALUE;
+
+    /**
+     * Nested scrolling: descendants that scroll in a nested way push what they do not consume to the layer, which
+     * is dragged with it. The position the layer had when first dragged is where the drag is measured from.
+     */
+    private final NestedScrollingParentHelper mNestedScrollingParentHelper = new NestedScrollingParentHelper(this);
+    private boolean mNestedDragging;
+    private boolean mNestedSettled;
+    private int mNestedStartScrollX;
+    private int mNestedStartScrollY;
 
     private int mShadowSize;
     private Drawable mShadowDrawable;
+    private int mShadowMode = SHADOW_MODE_DRAWABLE;
+    private final Rect mShadowBounds = new Rect();
+
+    /**
+     * Culling: children entirely outside of the part of the layer that is on screen are not drawn
+     */
+    private final Rect mVisibleRect = new Rect();
+    private final Rect mChildRect = new Rect();
+    private boolean mCulling;
+    private int mCulledChildCount;
+    private boolean mDrawSkipped;
+    private final ShadowCache mShadowCache = new ShadowCache();
+
+    /**
+     * Dims the parent around the layer, null while there is no scrim
+     */
+    private LayerScrim mScrim;
     private boolean mForceLayout;
 
     /**
@@ -117,8 +290,29 @@ public class SlidingLayer extends FrameLayout {
     private int mOffsetDistance;
 
     private boolean mDrawingCacheEnabled;
+
+    /**
+     * Whether the layer is being dragged or settled, which is when the layer type policy might want a hardware layer
+     */
+    private boolean mMoving;
+    private int mLayerTypePolicy = LAYER_TYPE_POLICY_ALWAYS;
+
+    /**
+     * Snapshot mode: while the layer moves its content is drawn once into a pooled bitmap, which is drawn instead
+     */
+    private static BitmapPool sSnapshotPool;
+    private BitmapPool mSnapshotPool;
+    private boolean mSnapshotModeEnabled;
+    private Bitmap mSnapshot;
+    private final Canvas mSnapshotCanvas = new Canvas();
+    private boolean mSnapshotDirty;
     private int mScreenSide;
 
+    /**
+     * Whether the layer is moved by its translation properties instead of by scrolling its content
+     */
+    private boolean mTranslationMode;
+
     /**
      * If the user taps the layer then we will switch state it if enabled.
      */
@@ -131,8 +325,23 @@ public class SlidingLayer extends FrameLayout {
 
     private boolean mEnabled = true;
     private boolean mSlidingFromShadowEnabled = true;
+
+    /**
+     * Part of the layer it can be dragged from. Touches starting elsewhere are left alone for the whole gesture
+     */
+    private int mDragRegion = DRAG_REGION_ANYWHERE;
+    private int mDragEdgeSize;
+    private View mDragHandle;
+    private int mDragHandleId = NO_ID;
+    private final Rect mDragRegionRect = new Rect();
+    private boolean mDragAllowed = true;
     private boolean mIsDragging;
     private boolean mIsUnableToDrag;
+
+    /**
+     * Whether the host has taken the gesture over, in which case the cancel the layer gets does not end it
+     */
+    private boolean mHostDragClaimed;
     private int mTouchSlop;
 
     private float mLastX = INVALID_VALUE;
@@ -146,12 +355,17 @@ public class SlidingLayer extends FrameLayout {
     /**
      * Flags to determine the state of the layer
      */
-    private static final int STATE_CLOSED = 0;
-    private static final int STATE_PREVIEW = 1;
-    private static final int STATE_OPENED = 2;
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_PREVIEW = 1;
+    public static final int STATE_OPENED = 2;
 
     private int mCurrentState;
 
+    /**
+     * State whose action has been notified as started but not yet as finished, if any
+     */
+    private int mPendingActionState = INVALID_VALUE;
+
     private boolean mScrolling;
 
     private OnInteractListener mOnInteractListener;
@@ -161,6 +375,26 @@ public class SlidingLayer extends FrameLayout {
      */
     private OnScrollListener mOnScrollListener;
 
+    /**
+     * Optional callback to notify client of the progress of the layer, at most once per frame
+     */
+    private OnProgressListener mOnProgressListener;
+    private FrameClock mProgressClock;
+    private final FrameClock.Callback mProgressCallback = new FrameClock.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            dispatchProgress(frameTimeNanos);
+        }
+    };
+
+    /**
+     * Last values handed to {@link #mOnProgressListener}
+     */
+    private float mDispatchedProgress = INVALID_VALUE;
+    private float mDispatchedVelocity;
+    private int mDispatchedState = INVALID_VALUE;
+    private long mProgressFrameTimeNanos;
+
     private int mMinimumVelocity;
     private int mFlingDistance;
 
@@ -206,6 +440,9 @@ public class SlidingLayer extends FrameLayout {
         // Sets the shadow size
         mShadowSize = (int) ta.getDimension(R.styleable.SlidingLayer_shadowSize, 0);
 
+        // Sets how the shadow is drawn
+        setShadowMode(ta.getInt(R.styleable.SlidingLayer_shadowMode, SHADOW_MODE_DRAWABLE));
+
         // Sets the ability to open or close the layer by tapping in any empty space
         changeStateOnTap = ta.getBoolean(R.styleable.SlidingLayer_changeStateOnTap, true);
 
@@ -219,6 +456,43 @@ public class SlidingLayer extends FrameLayout {
         // If showing offset is greater than preview mode offset dimension, exception is thrown
         checkPreviewModeConsistency();
 
+        // Sets whether the layer is moved by translating it instead of scrolling its content
+        setTranslationModeEnabled(ta.getBoolean(R.styleable.SlidingLayer_translationMode, false));
+
+        // Sets the interpolator of the settle animation, if other than the default one
+        int interpolatorRes = ta.getResourceId(R.styleable.SlidingLayer_settleInterpolator, INVALID_VALUE);
+        if (interpolatorRes != INVALID_VALUE) {
+            mInterpolator = new LookupTableInterpolator(AnimationUtils.loadInterpolator(context, interpolatorRes));
+        }
+
+        // Sets the physics used to settle the layer, if any
+        switch (ta.getInt(R.styleable.SlidingLayer_settleEngine, SETTLE_ENGINE_DURATION)) {
+        case SETTLE_ENGINE_SPRING:
+            mSettleEngine = new SpringSettleEngine();
+            break;
+        case SETTLE_ENGINE_DECAY:
+            mSettleEngine = new DecaySettleEngine();
+            break;
+        }
+
+        // Sets whether the finger is predicted while dragging
+        mTouchPredictionEnabled = ta.getBoolean(R.styleable.SlidingLayer_touchPrediction, false);
+
+        // Sets whether the content is drawn from a snapshot while the layer moves
+        mSnapshotModeEnabled = ta.getBoolean(R.styleable.SlidingLayer_snapshotMode, false);
+
+        // Sets when the view is backed by a hardware layer
+        mLayerTypePolicy = ta.getInt(R.styleable.SlidingLayer_layerTypePolicy, LAYER_TYPE_POLICY_ALWAYS);
+
+        // Sets the part of the layer it can be dragged from
+        mDragRegion = ta.getInt(R.styleable.SlidingLayer_dragRegion, DRAG_REGION_ANYWHERE);
+        mDragEdgeSize = ta.getDimensionPixelSize(R.styleable.SlidingLayer_dragEdgeSize,
+                (int) (DEFAULT_DRAG_EDGE_SIZE * context.getResources().getDisplayMetrics().density));
+        mDragHandleId = ta.getResourceId(R.styleable.SlidingLayer_dragHandle, NO_ID);
+
+        // Sets the color that dims the parent of the layer as it opens, if any
+        setScrimColor(ta.getColor(R.styleable.SlidingLayer_scrimColor, Color.TRANSPARENT));
+
         ta.recycle();
 
         init();
@@ -226,16 +500,16 @@ public class SlidingLayer extends FrameLayout {
 
     private void init() {
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-            setLayerType(LAYER_TYPE_HARDWARE, null);
-        }
+        updateLayerType();
 
         setWillNotDraw(false);
         setDescendantFocusability(FOCUS_AFTER_DESCENDANTS);
         setFocusable(true);
 
         final Context context = getContext();
-        mScroller = new Scroller(context, sMenuInterpolator);
+        mDurationSettleEngine = new DurationSettleEngine(mInterpolator);
+        mFrameClock = new FrameClock(this, mFrameCallback);
+        mProgressClock = new FrameClock(this, mProgressCallback);
 
         final ViewConfiguration configuration = ViewConfiguration.get(context);
         mTouchSlop = ViewConfigurationCompat.getScaledPagingTouchSlop(configuration);
@@ -251,11 +525,11 @@ public class SlidingLayer extends FrameLayout {
     /**
      * Method exposing the state of the panel
      *
-     * @return returns the state of the panel (@link STATE_OPENED, STATE_CLOSED or STATE_PREVIEW). Please note
-     * that if the panel was opened with smooth animation this method is not guaranteed to return
-     * its final value until the panel has reached its final position.
+     * @return returns the state of the panel ({@link #STATE_OPENED}, {@link #STATE_CLOSED} or
+     * {@link #STATE_PREVIEW}). Please note that when the panel moves with smooth animation this is the state it
+     * is heading to, which it has not necessarily reached yet.
      */
-    private int getCurrentState() {
+    public int getCurrentState() {
         return mCurrentState;
     }
 
@@ -299,25 +573,35 @@ public class SlidingLayer extends FrameLayout {
                                final int velocityX, final int velocityY) {
 
         if (!force && mCurrentState == state) {
-            setDrawingCacheEnabled(false);
+            // A settle already heading to this state keeps moving the layer until it ends
+            if (!mScrolling) {
+                setMoving(false);
+            }
             return;
         }
 
-        if (mOnInteractListener != null) {
-            notifyActionStartedForState(state);
+        // Retargeting an action that is already heading to this state does not start a new one
+        if (mPendingActionState != state) {
+            mPendingActionState = state;
+            if (mOnInteractListener != null) {
+                notifyActionStartedForState(state);
+            }
         }
 
+        mCurrentState = state;
+        requestProgressDispatch();
+
         final int pos[] = getDestScrollPosForState(state);
 
         if (smoothAnimation) {
             int velocity = allowedDirection() == HORIZONTAL ? velocityX : velocityY;
             smoothScrollTo(pos[0], pos[1], velocity);
         } else {
-            completeScroll();
+            stopScroll();
+            setMoving(false);
             scrollToAndNotify(pos[0], pos[1]);
+            mPendingActionState = INVALID_VALUE;
         }
-
-        mCurrentState = state;
     }
 
     /**
@@ -340,6 +624,28 @@ public class SlidingLayer extends FrameLayout {
         mOnScrollListener = listener;
     }
 
+    /**
+     * Sets the listener to be invoked with the progress of the layer, at most once per frame
+     * {@link OnProgressListener}. Unlike {@link OnScrollListener}, which is called on every scroll of the layer,
+     * this listener is called on the frame following any number of them. It is called once as soon as it is set.
+     *
+     * @param listener Listener to set
+     */
+    public void setOnProgressListener(OnProgressListener listener) {
+
+        mOnProgressListener = listener;
+        mDispatchedProgress = INVALID_VALUE;
+        mDispatchedVelocity = 0;
+        mDispatchedState = INVALID_VALUE;
+        mProgressFrameTimeNanos = 0;
+
+        if (listener != null) {
+            mProgressClock.postFrameCallback();
+        } else {
+            mProgressClock.removeFrameCallback();
+        }
+    }
+
     /**
      * Sets the transformer to use when the layer is being scrolled
      * {@link LayerTransformer}.
@@ -348,6 +654,287 @@ public class SlidingLayer extends FrameLayout {
      */
     public void setLayerTransformer(LayerTransformer layerTransformer) {
         mLayerTransformer = layerTransformer;
+        updateLayerType();
+    }
+
+    /**
+     * Sets when the view is backed by a hardware layer. A hardware layer keeps the content of the layer in a GPU
+     * texture, so moving or transforming the layer does not redraw its content, at the cost of the memory of the
+     * texture and of rendering it again whenever the content changes. Once set, the policy owns the layer type of
+     * the view. Requires Honeycomb or above.
+     *
+     * @param policy One of {@link #LAYER_TYPE_POLICY_ALWAYS}, {@link #LAYER_TYPE_POLICY_WHILE_MOVING},
+     *               {@link #LAYER_TYPE_POLICY_WHILE_TRANSFORMING} or {@link #LAYER_TYPE_POLICY_NEVER}
+     */
+    public void setLayerTypePolicy(int policy) {
+        mLayerTypePolicy = policy;
+        updateLayerType();
+    }
+
+    public int getLayerTypePolicy() {
+        return mLayerTypePolicy;
+    }
+
+    /**
+     * @return An estimate of the graphics memory taken by the hardware layer of the view right now, in bytes. 0 when
+     * the view is not backed by a hardware layer.
+     */
+    public int getLayerMemoryEstimate() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB || getLayerType() != LAYER_TYPE_HARDWARE) {
+            return 0;
+        }
+        // ARGB_8888 texture the size of the view
+        return getWidth() * getHeight() * 4;
+    }
+
+    /**
+     * Sets whether the content of the layer is drawn into a bitmap once when the layer starts moving, and that
+     * bitmap drawn instead of the content until the layer stops. The bitmap is taken from a pool and given back
+     * afterwards, so gestures do not allocate bitmaps once the pool holds one of the size of the layer. It replaces
+     * enabling the drawing cache of the layer and its children while it moves.
+     * <p/>
+     * Changes of the content while the layer moves are not shown unless {@link #invalidateSnapshot()} is called.
+     * Content that is not drawn through the view hierarchy, such as that of a SurfaceView or a TextureView, is not
+     * part of the snapshot.
+     *
+     * @param enabled true to draw from a snapshot while the layer moves
+     */
+    public void setSnapshotModeEnabled(boolean enabled) {
+
+        if (mSnapshotModeEnabled == enabled) {
+            return;
+        }
+
+        mSnapshotModeEnabled = enabled;
+        if (enabled) {
+            setDrawingCacheEnabled(false);
+        } else {
+            releaseSnapshot();
+            setDrawingCacheEnabled(mMoving);
+        }
+        invalidate();
+    }
+
+    public boolean isSnapshotModeEnabled() {
+        return mSnapshotModeEnabled;
+    }
+
+    /**
+     * Sets the pool snapshots are taken from. By default, all the layers share a pool of a sixteenth of the memory
+     * available to the app.
+     *
+     * @param pool Pool to take snapshots from, null for the shared one
+     */
+    public void setSnapshotPool(BitmapPool pool) {
+        releaseSnapshot();
+        mSnapshotPool = pool;
+    }
+
+    /**
+     * Draw the content again into the snapshot the layer is currently drawn from, if any. To be called when the
+     * content changes while the layer moves in snapshot mode.
+     */
+    public void invalidateSnapshot() {
+        if (mSnapshot != null) {
+            mSnapshotDirty = true;
+            invalidate();
+        }
+    }
+
+    private BitmapPool getSnapshotPool() {
+
+        if (mSnapshotPool != null) {
+            return mSnapshotPool;
+        }
+
+        if (sSnapshotPool == null) {
+            sSnapshotPool = new BitmapPool((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16));
+        }
+        return sSnapshotPool;
+    }
+
+    /**
+     * Draw the content of the layer from its snapshot, taking it first if needed.
+     *
+     * @return false if there can be no snapshot, in which case the content has to be drawn as usual
+     */
+    private boolean drawSnapshot(Canvas canvas) {
+
+        final int width = getWidth();
+        final int height = getHeight();
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+
+        if (mSnapshot != null && (mSnapshot.getWidth() != width || mSnapshot.getHeight() != height)) {
+            releaseSnapshot();
+        }
+
+        if (mSnapshot == null) {
+            mSnapshot = getSnapshotPool().get(width, height);
+            mSnapshotDirty = true;
+        }
+
+        if (mSnapshotDirty) {
+            mSnapshotDirty = false;
+            mSnapshot.eraseColor(Color.TRANSPARENT);
+            mSnapshotCanvas.setBitmap(mSnapshot);
+
+            // Children are drawn where they are laid out, the position of the layer is applied to the snapshot
+            final long drawingTime = getDrawingTime();
+            final int count = getChildCount();
+            for (int i = 0; i < count; i++) {
+                final View child = getChildAt(i);
+                if (child.getVisibility() == VISIBLE) {
+                    drawChild(mSnapshotCanvas, child, drawingTime);
+                }
+            }
+        }
+
+        canvas.drawBitmap(mSnapshot, 0, 0, null);
+        return true;
+    }
+
+    private void releaseSnapshot() {
+        if (mSnapshot != null) {
+            getSnapshotPool().put(mSnapshot);
+            mSnapshot = null;
+        }
+    }
+
+    private void updateLayerType() {
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+
+        final boolean hardware;
+        switch (mLayerTypePolicy) {
+        case LAYER_TYPE_POLICY_ALWAYS:
+            hardware = true;
+            break;
+        case LAYER_TYPE_POLICY_WHILE_MOVING:
+            hardware = mMoving;
+            break;
+        case LAYER_TYPE_POLICY_WHILE_TRANSFORMING:
+            hardware = mMoving && mLayerTransformer != null;
+            break;
+        default:
+            hardware = false;
+        }
+
+        final int layerType = hardware ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE;
+        if (getLayerType() != layerType) {
+            setLayerType(layerType, null);
+        }
+    }
+
+    /**
+     * Sets the engine used to settle the layer into its final position after it has been released or its
+     * state changed with a smooth animation. The engine starts from the velocity the layer has when released.
+     * {@link SettleEngine}.
+     *
+     * @param settleEngine Engine to adopt, or null to use the default fixed-duration animation
+     */
+    public void setSettleEngine(SettleEngine settleEngine) {
+        if (mSettleEngine != settleEngine) {
+            completeScroll();
+            mSettleEngine = settleEngine;
+        }
+    }
+
+    /**
+     * Sets the interpolator of the animation that settles the layer into its position. The interpolator is
+     * sampled once into a lookup table, so that evaluating it on every frame is cheap no matter how complex it is.
+     * Not used when a {@link SettleEngine} is set.
+     *
+     * @param interpolator Interpolator to adopt, or null to restore the default one
+     */
+    public void setInterpolator(Interpolator interpolator) {
+
+        if (interpolator == null) {
+            interpolator = sMenuInterpolator;
+        } else if (!(interpolator instanceof LookupTableInterpolator)) {
+            interpolator = new LookupTableInterpolator(interpolator);
+        }
+
+        completeScroll();
+        mInterpolator = interpolator;
+        mDurationSettleEngine.setInterpolator(interpolator);
+    }
+
+    /**
+     * Sets the interpolator of the animation that settles the layer by using an interpolator resource.
+     *
+     * @param resId The interpolator resource id to be set as the interpolator.
+     */
+    public void setInterpolatorRes(int resId) {
+        setInterpolator(AnimationUtils.loadInterpolator(getContext(), resId));
+    }
+
+    /**
+     * Moves the layer by setting its translation instead of scrolling its content. Translation is a property of
+     * the rendering of the view, so moving the layer does not require its content to be redrawn on every frame.
+     * Ignored below Honeycomb, where translation properties are not available.
+     *
+     * @param enabled true to move the layer with its translation, false to scroll its content
+     */
+    public void setTranslationModeEnabled(boolean enabled) {
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB || mTranslationMode == enabled) {
+            return;
+        }
+
+        completeScroll();
+
+        final int x = getLayerScrollX();
+        final int y = getLayerScrollY();
+        setLayerScroll(0, 0);
+        mTranslationMode = enabled;
+        setLayerScroll(x, y);
+    }
+
+    public boolean isTranslationModeEnabled() {
+        return mTranslationMode;
+    }
+
+    /**
+     * Extrapolates the finger while dragging, so that the layer is drawn where the finger is about to be rather
+     * than where it was last reported, which hides part of the touch latency. The prediction relies on the recent
+     * velocity of the finger and never takes the layer past its limits.
+     *
+     * @param enabled true to predict the position of the finger while dragging
+     * @see #setTouchPredictionLookAhead(float)
+     */
+    public void setTouchPredictionEnabled(boolean enabled) {
+        mTouchPredictionEnabled = enabled;
+        mDragScrollX = getLayerScrollX();
+        mDragScrollY = getLayerScrollY();
+    }
+
+    public boolean isTouchPredictionEnabled() {
+        return mTouchPredictionEnabled;
+    }
+
+    /**
+     * Sets how far ahead in time the finger is predicted. Defaults to one frame of the display the layer is shown
+     * on. Longer look-aheads hide more latency but overshoot more when the finger changes direction.
+     *
+     * @param lookAheadMillis Look-ahead in milliseconds, or a negative value to use a frame of the display
+     * @see #setTouchPredictionEnabled(boolean)
+     */
+    public void setTouchPredictionLookAhead(float lookAheadMillis) {
+        mTouchPredictionLookAhead = lookAheadMillis;
+    }
+
+    /**
+     * @return The look-ahead of the touch prediction, in milliseconds
+     */
+    public float getTouchPredictionLookAhead() {
+        if (mTouchPredictionLookAhead < 0) {
+            return mFrameClock.getFrameIntervalNanos() / 1000000f;
+        }
+        return mTouchPredictionLookAhead;
     }
 
     /**
@@ -361,6 +948,11 @@ public class SlidingLayer extends FrameLayout {
      */
     public void setShadowSize(final int shadowSize) {
         mShadowSize = shadowSize;
+        mShadowCache.invalidate();
+        if (isElevationShadow()) {
+            setElevation(shadowSize);
+            invalidateOutline();
+        }
         invalidate(getLeft(), getTop(), getRight(), getBottom());
     }
 
@@ -389,11 +981,46 @@ public class SlidingLayer extends FrameLayout {
      */
     public void setShadowDrawable(final Drawable d) {
         mShadowDrawable = d;
+        mShadowCache.invalidate();
         refreshDrawableState();
         setWillNotDraw(false);
         invalidate(getLeft(), getTop(), getRight(), getBottom());
     }
 
+    /**
+     * Sets how the shadow of the layer is drawn.
+     *
+     * @param shadowMode One of {@link #SHADOW_MODE_DRAWABLE}, {@link #SHADOW_MODE_CACHED} or
+     *                   {@link #SHADOW_MODE_ELEVATION}
+     */
+    public void setShadowMode(int shadowMode) {
+
+        final boolean wasElevation = isElevationShadow();
+        mShadowMode = shadowMode;
+
+        if (shadowMode != SHADOW_MODE_CACHED) {
+            mShadowCache.release();
+        }
+
+        if (isElevationShadow()) {
+            setOutlineProvider(new ContentOutlineProvider());
+            setElevation(mShadowSize);
+        } else if (wasElevation) {
+            setOutlineProvider(ViewOutlineProvider.BACKGROUND);
+            setElevation(0);
+        }
+
+        invalidate();
+    }
+
+    public int getShadowMode() {
+        return mShadowMode;
+    }
+
+    private boolean isElevationShadow() {
+        return mShadowMode == SHADOW_MODE_ELEVATION && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
     /**
      * Sets a drawable resource that will be used to create the shadow for the
      * layer.
@@ -404,6 +1031,49 @@ public class SlidingLayer extends FrameLayout {
         setShadowDrawable(getContext().getResources().getDrawable(resId));
     }
 
+    /**
+     * Sets the color that dims the parent of the layer around it as the layer opens. The alpha of the color is
+     * reached once the layer is opened. Taps on the scrim close the layer. The scrim is drawn on the overlay of the
+     * parent, available from Jelly Bean MR2 on. Within a {@link SlidingLayerHost} the host takes the taps before any
+     * other view, in other parents they come through the parent's touch delegate, chained with any delegate it
+     * already had, which only gets the touches none of the children of the parent handled.
+     *
+     * @param color Color of the scrim, transparent to remove it
+     */
+    public void setScrimColor(int color) {
+
+        if (Color.alpha(color) == 0) {
+            if (mScrim != null) {
+                mScrim.detach();
+                mScrim = null;
+            }
+            return;
+        }
+
+        if (mScrim == null) {
+            mScrim = new LayerScrim(this);
+        }
+        mScrim.setColor(color);
+
+        if (getParent() instanceof ViewGroup) {
+            mScrim.attach((ViewGroup) getParent());
+            updateScrim(getLayerScrollX(), getLayerScrollY());
+        }
+    }
+
+    public int getScrimColor() {
+        return mScrim != null ? mScrim.getColor() : Color.TRANSPARENT;
+    }
+
+    /**
+     * @param x Horizontal position, in the coordinates of the parent
+     * @param y Vertical position, in the coordinates of the parent
+     * @return true if the scrim of the layer is drawn at the given position
+     */
+    boolean isOnScrim(float x, float y) {
+        return mScrim != null && mScrim.isOnScrim(x, y);
+    }
+
     /**
      * Sets the offset distance of the panel by using a dimension resource.
      *
@@ -458,6 +1128,14 @@ public class SlidingLayer extends FrameLayout {
         }
     }
 
+    /**
+     * @return returns the number of pixels that are visible when the panel is in preview mode, or a negative value
+     * if the preview mode is disabled
+     */
+    public int getPreviewOffsetDistance() {
+        return mPreviewOffsetDistance;
+    }
+
     private void checkPreviewModeConsistency() {
         if (isPreviewModeEnabled() && mOffsetDistance > mPreviewOffsetDistance) {
             throw new IllegalStateException("The showing offset of the layer can never be greater than the " +
@@ -477,13 +1155,113 @@ public class SlidingLayer extends FrameLayout {
         return super.verifyDrawable(who) || who == mShadowDrawable;
     }
 
-    @Override
-    protected void drawableStateChanged() {
-        super.drawableStateChanged();
-        final Drawable d = mShadowDrawable;
-        if (d != null && d.isStateful()) {
-            d.setState(getDrawableState());
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        final Drawable d = mShadowDrawable;
+        if (d != null && d.isStateful() && d.setState(getDrawableState())) {
+            mShadowCache.invalidate();
+        }
+    }
+
+    /**
+     * Sets the part of the layer it can be dragged from. Touches starting anywhere else are rejected right away and
+     * never drag the layer, although tapping the layer still changes its state if enabled.
+     *
+     * @param dragRegion One of {@link #DRAG_REGION_ANYWHERE}, {@link #DRAG_REGION_EDGE},
+     *                   {@link #DRAG_REGION_HANDLE} or {@link #DRAG_REGION_OFFSET}
+     */
+    public void setDragRegion(int dragRegion) {
+        mDragRegion = dragRegion;
+    }
+
+    public int getDragRegion() {
+        return mDragRegion;
+    }
+
+    /**
+     * Sets the size of the band the layer can be dragged from with {@link #DRAG_REGION_EDGE}.
+     *
+     * @param dragEdgeSize Size of the band in pixels, from the edge the layer comes in with
+     */
+    public void setDragEdgeSize(int dragEdgeSize) {
+        mDragEdgeSize = dragEdgeSize;
+    }
+
+    public int getDragEdgeSize() {
+        return mDragEdgeSize;
+    }
+
+    /**
+     * Sets the view the layer can be dragged from with {@link #DRAG_REGION_HANDLE}.
+     *
+     * @param dragHandle A descendant of the layer
+     */
+    public void setDragHandle(View dragHandle) {
+        mDragHandle = dragHandle;
+        mDragHandleId = NO_ID;
+    }
+
+    public View getDragHandle() {
+        if (mDragHandle == null && mDragHandleId != NO_ID) {
+            mDragHandle = findViewById(mDragHandleId);
+        }
+        return mDragHandle;
+    }
+
+    /**
+     * @param x Horizontal position of a touch, relative to the layer
+     * @param y Vertical position of a touch, relative to the layer
+     * @return Whether the layer can be dragged from the touch
+     */
+    private boolean isWithinDragRegion(float x, float y) {
+
+        final int width = getWidth();
+        final int height = getHeight();
+        final Rect region = mDragRegionRect;
+
+        int band;
+        switch (mDragRegion) {
+        case DRAG_REGION_ANYWHERE:
+            return true;
+        case DRAG_REGION_EDGE:
+            band = mDragEdgeSize;
+            break;
+        case DRAG_REGION_OFFSET:
+            band = mOffsetDistance;
+            break;
+        case DRAG_REGION_HANDLE:
+            final View handle = getDragHandle();
+            if (handle == null || !handle.isShown()) {
+                return false;
+            }
+            region.set(0, 0, handle.getWidth(), handle.getHeight());
+            offsetDescendantRectToMyCoords(handle, region);
+            band = INVALID_VALUE;
+            break;
+        default:
+            return true;
+        }
+
+        if (band != INVALID_VALUE) {
+            switch (mScreenSide) {
+            case STICK_TO_RIGHT:
+                region.set(0, 0, band, height);
+                break;
+            case STICK_TO_LEFT:
+                region.set(width - band, 0, width, height);
+                break;
+            case STICK_TO_TOP:
+                region.set(0, height - band, width, height);
+                break;
+            case STICK_TO_BOTTOM:
+                region.set(0, 0, width, band);
+                break;
+            }
         }
+
+        // The region is where children are laid out, which the content is scrolled from
+        return region.contains((int) x + getScrollX(), (int) y + getScrollY());
     }
 
     public boolean isSlidingEnabled() {
@@ -535,10 +1313,23 @@ public class SlidingLayer extends FrameLayout {
         return event.getRawY();
     }
 
+    /**
+     * Raw positions are only given for the first pointer, the others are recovered from their offset to it, which
+     * is the same for all of them
+     */
+    private float getViewX(MotionEvent event, int pointerIndex) {
+        return event.getX(pointerIndex) + getViewX(event) - event.getX();
+    }
+
+    private float getViewY(MotionEvent event, int pointerIndex) {
+        return event.getY(pointerIndex) + getViewY(event) - event.getY();
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
 
-        if (!mEnabled) {
+        // Within a host, drags are recognized once for all of its layers and handed to the one they belong to
+        if (!mEnabled || isHosted()) {
             return false;
         }
 
@@ -548,10 +1339,7 @@ public class SlidingLayer extends FrameLayout {
             mIsDragging = false;
             mIsUnableToDrag = false;
             mActivePointerId = INVALID_VALUE;
-            if (mVelocityTracker != null) {
-                mVelocityTracker.recycle();
-                mVelocityTracker = null;
-            }
+            mVelocityEstimator.clear();
             return false;
         }
 
@@ -571,15 +1359,23 @@ public class SlidingLayer extends FrameLayout {
                 break;
             }
             final int pointerIndex = MotionEventCompat.findPointerIndex(ev, activePointerId);
-            final float x = getViewX(ev);
+            if (pointerIndex < 0) {
+                break;
+            }
+            final float x = getViewX(ev, pointerIndex);
             final float dx = x - mLastX;
             final float xDiff = Math.abs(dx);
-            final float y = getViewY(ev);
+            final float y = getViewY(ev, pointerIndex);
             final float dy = y - mLastY;
             final float yDiff = Math.abs(dy);
 
+            // Nested scrolling descendants report what they leave to the layer, there is nothing to poll
+            if (getNestedScrollAxes() != ViewCompat.SCROLL_AXIS_NONE) {
+                return false;
+            }
+
             if ((dx != 0 || dy != 0) &&
-                    canScroll(this, false, (int) dx, (int) dy, (int) x, (int) y)) {
+                    canDescendantScroll(dx, dy, ev.getX(pointerIndex), ev.getY(pointerIndex))) {
                 mLastX = mInitialRawX = x;
                 mLastY = mInitialRawY = y;
                 mInitialX = ev.getX(pointerIndex);
@@ -597,8 +1393,8 @@ public class SlidingLayer extends FrameLayout {
             }
 
             if (validHorizontalDrag || validVerticalDrag) {
-                mIsDragging = true;
-                setDrawingCacheEnabled(true);
+                // Pick the layer up wherever its animation has brought it so far
+                startDrag();
             }
             break;
 
@@ -608,6 +1404,16 @@ public class SlidingLayer extends FrameLayout {
             mInitialX = ev.getX(0);
             mInitialY = ev.getY(0);
             mActivePointerId = MotionEventCompat.getPointerId(ev, 0);
+            mDescendantScrollsBackward = INVALID_VALUE;
+            mDescendantScrollsForward = INVALID_VALUE;
+
+            // Touches the layer cannot be dragged from are left alone until the next one
+            mDragAllowed = isWithinDragRegion(ev.getX(), ev.getY());
+            if (!mDragAllowed) {
+                mIsDragging = false;
+                mIsUnableToDrag = true;
+                return false;
+            }
 
             if (touchPointIsWithinBounds(ev.getX(), ev.getY())) {
                 mIsDragging = false;
@@ -615,7 +1421,6 @@ public class SlidingLayer extends FrameLayout {
                 // We don't want to do anything, send the event up
                 return super.onInterceptTouchEvent(ev);
             } else {
-                completeScroll();
                 mIsDragging = false;
                 mIsUnableToDrag = true;
             }
@@ -626,10 +1431,7 @@ public class SlidingLayer extends FrameLayout {
         }
 
         if (!mIsDragging) {
-            if (mVelocityTracker == null) {
-                mVelocityTracker = VelocityTracker.obtain();
-            }
-            mVelocityTracker.addMovement(ev);
+            trackMovement(ev);
         }
 
         return mIsDragging;
@@ -646,16 +1448,23 @@ public class SlidingLayer extends FrameLayout {
             return false;
         }
 
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
+        final int action = ev.getAction();
+
+        if ((action & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_DOWN) {
+            mDragAllowed = isWithinDragRegion(ev.getX(), ev.getY());
         }
-        mVelocityTracker.addMovement(ev);
 
-        final int action = ev.getAction();
+        // A touch outside of the drag region can only end up as a tap, its movement is of no interest. Neither is
+        // that of touches within a host, which drags the layer itself
+        final boolean canStartDrag = mDragAllowed && !isHosted();
+        if (canStartDrag || mIsDragging) {
+            trackMovement(ev);
+        }
 
         switch (action & MotionEvent.ACTION_MASK) {
         case MotionEvent.ACTION_DOWN: {
-            completeScroll();
+            // Catch the layer where it is, the action in flight is resumed or retargeted on release
+            stopScroll();
 
             // Remember where the motion event started
             mLastX = mInitialRawX = getViewX(ev);
@@ -668,80 +1477,80 @@ public class SlidingLayer extends FrameLayout {
 
         case MotionEvent.ACTION_MOVE: {
 
+            if (!canStartDrag && !mIsDragging) {
+                break;
+            }
+
             final int pointerIndex = MotionEventCompat.findPointerIndex(ev, mActivePointerId);
+            if (pointerIndex < 0) {
+                break;
+            }
+
+            if (!touchPointIsWithinBounds(ev.getX(pointerIndex), ev.getY(pointerIndex), false)) return false;
+
+            // Samples batched into the event are given in local coordinates, the raw ones are recovered from their
+            // offset to the latest sample, which is the same for all of them
+            final float offsetX = getViewX(ev) - ev.getX();
+            final float offsetY = getViewY(ev) - ev.getY();
 
-            if (!touchPointIsWithinBounds(ev.getX(), ev.getY(), false)) return false;
+            // With touch prediction the layer is not where the drag is, carry on from the latter
+            final boolean predicted = mTouchPredictionEnabled && mIsDragging;
+            float scrollX = predicted ? mDragScrollX : getLayerScrollX();
+            float scrollY = predicted ? mDragScrollY : getLayerScrollY();
 
-            final float x = getViewX(ev);
-            final float y = getViewY(ev);
+            final int historySize = ev.getHistorySize();
+            for (int h = 0; h <= historySize; h++) {
 
-            final float deltaX = mLastX - x;
-            final float deltaY = mLastY - y;
+                final float x = (h < historySize ? ev.getHistoricalX(pointerIndex, h) : ev.getX(pointerIndex)) +
+                        offsetX;
+                final float y = (h < historySize ? ev.getHistoricalY(pointerIndex, h) : ev.getY(pointerIndex)) +
+                        offsetY;
 
-            mLastX = x;
-            mLastY = y;
+                final float deltaX = mLastX - x;
+                final float deltaY = mLastY - y;
 
-            if (!mIsDragging) {
+                mLastX = x;
+                mLastY = y;
+
+                if (!mIsDragging) {
+
+                    final float xDiff = Math.abs(x - mInitialRawX);
+                    final float yDiff = Math.abs(y - mInitialRawY);
 
-                final float xDiff = Math.abs(x - mInitialRawX);
-                final float yDiff = Math.abs(y - mInitialRawY);
+                    final boolean validHorizontalDrag = xDiff > mTouchSlop && xDiff > yDiff;
+                    final boolean validVerticalDrag = yDiff > mTouchSlop && yDiff > xDiff;
 
-                final boolean validHorizontalDrag = xDiff > mTouchSlop && xDiff > yDiff;
-                final boolean validVerticalDrag = yDiff > mTouchSlop && yDiff > xDiff;
+                    if (validHorizontalDrag || validVerticalDrag) {
+                        startDrag();
+                        scrollX = mDragScrollX;
+                        scrollY = mDragScrollY;
+                    }
+                }
 
-                if (validHorizontalDrag || validVerticalDrag) {
-                    mIsDragging = true;
-                    setDrawingCacheEnabled(true);
+                if (mIsDragging) {
+                    scrollX = clampDragScrollX(scrollX + deltaX);
+                    scrollY = clampDragScrollY(scrollY + deltaY);
                 }
             }
 
             if (mIsDragging) {
 
-                final float oldScrollX = getScrollX();
-                final float oldScrollY = getScrollY();
-                float scrollX = oldScrollX + deltaX;
-                float scrollY = oldScrollY + deltaY;
-
-                // Log.d("Layer", String.format("Layer scrollX[%f],scrollY[%f]", scrollX, scrollY));
-                final float leftBound, rightBound;
-                final float bottomBound, topBound;
-                switch (mScreenSide) {
-                case STICK_TO_LEFT:
-                    topBound = bottomBound = rightBound = 0;
-                    leftBound = getWidth(); // How far left we can scroll
-                    break;
-                case STICK_TO_RIGHT:
-                    rightBound = -getWidth();
-                    topBound = bottomBound = leftBound = 0;
-                    break;
-                case STICK_TO_TOP:
-                    topBound = getHeight();
-                    bottomBound = rightBound = leftBound = 0;
-                    break;
-                case STICK_TO_BOTTOM:
-                    bottomBound = -getHeight();
-                    topBound = rightBound = leftBound = 0;
-                    break;
-                default:
-                    topBound = bottomBound = rightBound = leftBound = 0;
-                    break;
-                }
+                if (mTouchPredictionEnabled) {
 
-                if (scrollX > leftBound) {
-                    scrollX = leftBound;
-                } else if (scrollX < rightBound) {
-                    scrollX = rightBound;
-                }
-                if (scrollY > topBound) {
-                    scrollY = topBound;
-                } else if (scrollY < bottomBound) {
-                    scrollY = bottomBound;
-                }
+                    mDragScrollX = scrollX;
+                    mDragScrollY = scrollY;
 
-                // Keep the precision
-                mLastX += scrollX - (int) scrollX;
-                mLastY += scrollY - (int) scrollY;
+                    mVelocityEstimator.computeVelocity(1000, mMaximumVelocity);
+                    scrollX = predictDragScrollX(scrollX, mVelocityEstimator.getXVelocity());
+                    scrollY = predictDragScrollY(scrollY, mVelocityEstimator.getYVelocity());
 
+                } else {
+                    // Keep the precision
+                    mLastX += scrollX - (int) scrollX;
+                    mLastY += scrollY - (int) scrollY;
+                }
+
+                // A single update for the whole batch
                 scrollToAndNotify((int) scrollX, (int) scrollY);
             }
             break;
@@ -750,14 +1559,12 @@ public class SlidingLayer extends FrameLayout {
         case MotionEvent.ACTION_UP: {
 
             if (mIsDragging) {
-                final VelocityTracker velocityTracker = mVelocityTracker;
-                velocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
-                final int initialVelocityX = (int) VelocityTrackerCompat.getXVelocity(velocityTracker,
-                        mActivePointerId);
-                final int initialVelocityY = (int) VelocityTrackerCompat.getYVelocity(velocityTracker,
-                        mActivePointerId);
-                final int scrollX = getScrollX();
-                final int scrollY = getScrollY();
+                final VelocityEstimator velocityEstimator = mVelocityEstimator;
+                velocityEstimator.computeVelocity(1000, mMaximumVelocity);
+                final int initialVelocityX = (int) velocityEstimator.getXVelocity();
+                final int initialVelocityY = (int) velocityEstimator.getYVelocity();
+                final int scrollX = getLayerScrollX();
+                final int scrollY = getLayerScrollY();
 
                 final int pointerIndex = MotionEventCompat.findPointerIndex(ev, mActivePointerId);
                 final float x = getViewX(ev);
@@ -773,6 +1580,8 @@ public class SlidingLayer extends FrameLayout {
             } else if (changeStateOnTap) {
                 int nextState = determineNextStateAfterTap();
                 setLayerState(nextState, true, true);
+            } else {
+                resumeScroll();
             }
             break;
         }
@@ -782,22 +1591,22 @@ public class SlidingLayer extends FrameLayout {
                 setLayerState(mCurrentState, true, true);
                 mActivePointerId = INVALID_VALUE;
                 endDrag();
+            } else if (!mHostDragClaimed) {
+                // The host drags the layer from here on, resuming the scroll would only have it stopped again
+                resumeScroll();
             }
             break;
 
         case MotionEvent.ACTION_POINTER_DOWN: {
             final int pointerIndex = MotionEventCompat.getActionIndex(ev);
             mActivePointerId = ev.getPointerId(pointerIndex);
-            mLastX = getViewX(ev);
-            mLastY = getViewY(ev);
+            mLastX = getViewX(ev, pointerIndex);
+            mLastY = getViewY(ev, pointerIndex);
             break;
 
         }
         case MotionEvent.ACTION_POINTER_UP: {
             onSecondaryPointerUp(ev);
-            final int pointerIndex = MotionEventCompat.findPointerIndex(ev, mActivePointerId);
-            mLastX = getViewX(ev);
-            mLastY = getViewY(ev);
             break;
         }
         }
@@ -818,17 +1627,26 @@ public class SlidingLayer extends FrameLayout {
 
     private boolean touchPointIsWithinBounds(final float touchX, final float touchY, boolean withinLayer) {
 
-        int scroll = 0;
+        int scroll;
         float touch;
 
         if (allowedDirection() == HORIZONTAL) {
-            if (withinLayer) scroll = getScrollX();
+            scroll = getLayerScrollX();
             touch = touchX;
         } else {
-            if (withinLayer) scroll = getScrollY();
+            scroll = getLayerScrollY();
             touch = touchY;
         }
 
+        if (mTranslationMode) {
+            // Touches are relative to the translated layer, bring them back to where it is laid out
+            touch -= scroll;
+        }
+
+        if (!withinLayer) {
+            scroll = 0;
+        }
+
         switch (mScreenSide) {
         case STICK_TO_RIGHT:
         case STICK_TO_BOTTOM:
@@ -843,6 +1661,273 @@ public class SlidingLayer extends FrameLayout {
         }
     }
 
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        final int axis = allowedDirection() == HORIZONTAL ?
+                ViewCompat.SCROLL_AXIS_HORIZONTAL :
+                ViewCompat.SCROLL_AXIS_VERTICAL;
+        return mEnabled && mDragAllowed && (nestedScrollAxes & axis) != 0;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int nestedScrollAxes) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, nestedScrollAxes);
+        mNestedDragging = false;
+        mNestedSettled = false;
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        // The layer opens before the descendant scrolls
+        if (allowedDirection() == HORIZONTAL) {
+            consumed[0] = dragNested(dx, true);
+        } else {
+            consumed[1] = dragNested(dy, true);
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        // Once the descendant cannot scroll any further the layer takes the rest, closing it as well
+        dragNested(allowedDirection() == HORIZONTAL ? dxUnconsumed : dyUnconsumed, false);
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+
+        if (!mNestedDragging) {
+            return false;
+        }
+
+        // The layer settles with the fling instead of the descendant. Content flings the opposite way of the finger
+        settleNested(Math.round(-velocityX), Math.round(-velocityY));
+        return true;
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        return false;
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        mNestedScrollingParentHelper.onStopNestedScroll(target);
+        if (mNestedDragging && !mNestedSettled) {
+            settleNested(0, 0);
+        }
+        mNestedDragging = false;
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    /**
+     * Drags the layer by a distance reported by a nested scrolling descendant.
+     *
+     * @param delta       Distance in the direction the content scrolls, which is the one the layer scrolls as well
+     * @param openingOnly true to only take the distance if it opens the layer
+     * @return The distance the layer took
+     */
+    private int dragNested(int delta, boolean openingOnly) {
+
+        if (delta == 0 || mNestedSettled) {
+            return 0;
+        }
+
+        final boolean horizontal = allowedDirection() == HORIZONTAL;
+        final int scrollX = getLayerScrollX();
+        final int scrollY = getLayerScrollY();
+        final int scroll = horizontal ? scrollX : scrollY;
+        final int target = (int) (horizontal ? clampDragScrollX(scroll + delta) : clampDragScrollY(scroll + delta));
+
+        // The layer is opened at 0
+        if (target == scroll || openingOnly && Math.abs(target) > Math.abs(scroll)) {
+            return 0;
+        }
+
+        if (!mNestedDragging) {
+            stopScroll();
+            mNestedDragging = true;
+            mNestedStartScrollX = scrollX;
+            mNestedStartScrollY = scrollY;
+            setMoving(true);
+        }
+
+        if (horizontal) {
+            scrollToAndNotify(target, scrollY);
+        } else {
+            scrollToAndNotify(scrollX, target);
+        }
+        return target - scroll;
+    }
+
+    /**
+     * Settles a layer dragged by a nested scrolling descendant as if it had been released by the finger.
+     *
+     * @param velocityX Horizontal velocity of the finger
+     * @param velocityY Vertical velocity of the finger
+     */
+    private void settleNested(int velocityX, int velocityY) {
+
+        mNestedSettled = true;
+
+        final int scrollX = getLayerScrollX();
+        final int scrollY = getLayerScrollY();
+        final int nextState = determineNextStateForDrag(scrollX, scrollY, velocityX, velocityY,
+                mNestedStartScrollX, mNestedStartScrollY, scrollX, scrollY);
+        setLayerState(nextState, true, true, velocityX, velocityY);
+    }
+
+    private boolean isHosted() {
+        return getParent() instanceof SlidingLayerHost;
+    }
+
+    boolean isHorizontal() {
+        return allowedDirection() == HORIZONTAL;
+    }
+
+    /**
+     * Prepares the layer for a gesture recognized by its host.
+     *
+     * @param x Horizontal position of the touch, relative to the layer
+     * @param y Vertical position of the touch, relative to the layer
+     * @return Whether the layer can be dragged from the touch
+     */
+    boolean onHostTouchDown(float x, float y) {
+        mHostDragClaimed = false;
+        mDragAllowed = isWithinDragRegion(x, y);
+        return mEnabled && mDragAllowed && touchPointIsWithinBounds(x, y);
+    }
+
+    /**
+     * @param dx Horizontal movement of the finger
+     * @param dy Vertical movement of the finger
+     * @return Whether the layer would move if dragged by the given movement
+     */
+    boolean canDragBy(float dx, float dy) {
+        // The layer scrolls in the opposite direction of the finger
+        if (isHorizontal()) {
+            final int scrollX = getLayerScrollX();
+            return dx != 0 && (int) clampDragScrollX(scrollX - dx) != scrollX;
+        } else {
+            final int scrollY = getLayerScrollY();
+            return dy != 0 && (int) clampDragScrollY(scrollY - dy) != scrollY;
+        }
+    }
+
+    /**
+     * @param x          Horizontal position of the touch, relative to the layer
+     * @param y          Vertical position of the touch, relative to the layer
+     * @param horizontal true for a horizontal movement of the finger, false for a vertical one
+     * @param delta      Movement of the finger along that axis
+     * @return Whether a descendant under the touch can scroll with the movement of the finger, or is already
+     * scrolling in a nested way
+     */
+    boolean canContentScroll(float x, float y, boolean horizontal, float delta) {
+        if (getNestedScrollAxes() != ViewCompat.SCROLL_AXIS_NONE) {
+            return true;
+        }
+        return delta != 0 && mScrollableIndex.canScrollAt((int) x + getScrollX(), (int) y + getScrollY(), horizontal,
+                delta > 0 ? -1 : 1);
+    }
+
+    /**
+     * Tells the layer its host takes the gesture over. Called before the touch is cancelled for the layer and its
+     * descendants, and followed by {@link #startHostDrag()} or {@link #cancelHostDrag()}.
+     */
+    void claimHostDrag() {
+        mHostDragClaimed = true;
+    }
+
+    void startHostDrag() {
+        startDrag();
+    }
+
+    /**
+     * @param dx        Horizontal movement of the finger since the last call
+     * @param dy        Vertical movement of the finger since the last call
+     * @param velocityX Horizontal velocity of the finger, in pixels per second. Only used with touch prediction
+     * @param velocityY Vertical velocity of the finger, in pixels per second. Only used with touch prediction
+     */
+    void hostDragBy(float dx, float dy, float velocityX, float velocityY) {
+
+        mDragScrollX = clampDragScrollX(mDragScrollX - dx);
+        mDragScrollY = clampDragScrollY(mDragScrollY - dy);
+
+        if (mTouchPredictionEnabled) {
+            scrollToAndNotify((int) predictDragScrollX(mDragScrollX, velocityX),
+                    (int) predictDragScrollY(mDragScrollY, velocityY));
+        } else {
+            scrollToAndNotify((int) mDragScrollX, (int) mDragScrollY);
+        }
+    }
+
+    /**
+     * Settles the layer once released by a drag of its host, as if it had been dragged by itself.
+     */
+    void endHostDrag(int velocityX, int velocityY, int initialX, int initialY, int x, int y) {
+        final int nextState = determineNextStateForDrag(getLayerScrollX(), getLayerScrollY(), velocityX, velocityY,
+                initialX, initialY, x, y);
+        setLayerState(nextState, true, true, velocityX, velocityY);
+        mHostDragClaimed = false;
+        endDrag();
+    }
+
+    /**
+     * Brings the layer back to its current state once its host gives the gesture up, whether the drag started or
+     * not.
+     */
+    void cancelHostDrag() {
+        mHostDragClaimed = false;
+        if (mIsDragging) {
+            setLayerState(mCurrentState, true, true);
+            endDrag();
+        } else {
+            resumeScroll();
+        }
+    }
+
+    /**
+     * Tells whether the touch lands on a descendant that can scroll the way the finger moves, in which case the
+     * descendant gets the gesture. The answer for each direction is kept until the next gesture.
+     *
+     * @param dx Horizontal movement of the finger
+     * @param dy Vertical movement of the finger
+     * @param x  Horizontal position of the touch, relative to the layer
+     * @param y  Vertical position of the touch, relative to the layer
+     */
+    private boolean canDescendantScroll(float dx, float dy, float x, float y) {
+
+        final boolean horizontal = allowedDirection() == HORIZONTAL;
+        final int delta = (int) (horizontal ? dx : dy);
+        if (delta == 0 || mScrollableIndex.getCount() == 0) {
+            return false;
+        }
+
+        // Content scrolls in the opposite direction of the finger
+        final boolean backward = delta > 0;
+        int answer = backward ? mDescendantScrollsBackward : mDescendantScrollsForward;
+
+        if (answer == INVALID_VALUE) {
+            final boolean canScroll = mScrollableIndex.canScrollAt((int) x + getScrollX(), (int) y + getScrollY(),
+                    horizontal, backward ? -1 : 1);
+            answer = canScroll ? 1 : 0;
+            if (backward) {
+                mDescendantScrollsBackward = answer;
+            } else {
+                mDescendantScrollsForward = answer;
+            }
+        }
+
+        return answer == 1;
+    }
+
+    /**
+     * Tests whether a descendant of the given view under the given point can scroll by walking the hierarchy. The
+     * layer itself tests its descendants through an index built on layout instead.
+     */
     protected boolean canScroll(View v, boolean checkV, int dx, int dy, int x, int y) {
 
         if (v instanceof ViewGroup) {
@@ -971,29 +2056,47 @@ public class SlidingLayer extends FrameLayout {
      * @param x        the number of pixels to scroll by on the X axis
      * @param y        the number of pixels to scroll by on the Y axis
      * @param velocity the velocity associated with a fling, if applicable. (0
-     *                 otherwise)
+     *                 otherwise). Relative to the direction of the finger.
      */
     void smoothScrollTo(int x, int y, int velocity) {
 
         if (getChildCount() == 0) {
-            setDrawingCacheEnabled(false);
+            setMoving(false);
             return;
         }
 
-        int sx = getScrollX();
-        int sy = getScrollY();
+        int sx = getLayerScrollX();
+        int sy = getLayerScrollY();
         int dx = x - sx;
         int dy = y - sy;
         if (dx == 0 && dy == 0) {
-            completeScroll();
-            if (mOnInteractListener != null) {
-                notifyActionFinished();
-            }
+            stopScroll();
+            setMoving(false);
+            finishAction();
             return;
         }
 
-        setDrawingCacheEnabled(true);
+        // An animation in flight is retargeted keeping its velocity, unless a new one comes with the request
+        final boolean retarget = mScrolling && velocity == 0 && mActiveSettleEngine != null;
+
+        final boolean horizontal = allowedDirection() == HORIZONTAL;
+        final float position = retarget ? mActiveSettleEngine.getCurrPosition() : horizontal ? sx : sy;
+
+        // The layer scrolls in the opposite direction of the finger
+        final float scrollVelocity = retarget ? mActiveSettleEngine.getCurrVelocity() : -velocity;
+
+        setMoving(true);
         mScrolling = true;
+        mFrameClock.updateRefreshRate();
+
+        if (mSettleEngine != null) {
+            startSettleEngine(mSettleEngine, position, scrollVelocity, horizontal ? x : y);
+            return;
+        }
+
+        if (retarget) {
+            velocity = Math.round(scrollVelocity);
+        }
 
         final int width = getWidth();
         final int halfWidth = width / 2;
@@ -1007,37 +2110,179 @@ public class SlidingLayer extends FrameLayout {
         } else {
             duration = MAX_SCROLLING_DURATION;
         }
-        duration = Math.min(duration, MAX_SCROLLING_DURATION);
+        duration = Math.min(duration, MAX_SCROLLING_DURATION);
+
+        // End the animation right on a frame of the display, whatever its refresh rate
+        final long durationNanos = mFrameClock.roundToFrames(duration);
+
+        mDurationSettleEngine.setDuration(durationNanos);
+        startSettleEngine(mDurationSettleEngine, position, scrollVelocity, horizontal ? x : y);
+    }
+
+    private void startSettleEngine(SettleEngine engine, float position, float velocity, float target) {
+
+        if (mActiveSettleEngine != null && mActiveSettleEngine != engine) {
+            mActiveSettleEngine.forceFinished(true);
+        }
+
+        mActiveSettleEngine = engine;
+        engine.start(position, velocity, target);
+
+        // The first step covers a whole frame, whenever within it the animation started
+        mLastFrameTimeNanos = 0;
+        mFrameClock.postFrameCallback();
+    }
+
+    /**
+     * Steps the running animation with the time elapsed since the previous frame. Dropped frames are therefore
+     * caught up with on the next one instead of stretching the animation.
+     *
+     * @param frameTimeNanos The time at which the frame started rendering
+     */
+    private void computeSettleFrame(long frameTimeNanos) {
+
+        final SettleEngine engine = mActiveSettleEngine;
+        if (!mScrolling || engine == null) {
+            return;
+        }
+
+        final long elapsed = mLastFrameTimeNanos != 0 ?
+                frameTimeNanos - mLastFrameTimeNanos :
+                mFrameClock.getFrameIntervalNanos();
+        mLastFrameTimeNanos = frameTimeNanos;
+
+        if (engine.computeOffset(elapsed / 1000000000f)) {
+
+            final int oldX = getLayerScrollX();
+            final int oldY = getLayerScrollY();
+            final int x = getCurrScrollX();
+            final int y = getCurrScrollY();
+
+            if (oldX != x || oldY != y) {
+                scrollToAndNotify(x, y);
+            }
+
+            if (!engine.isFinished()) {
+                // Keep on stepping until the animation has finished.
+                mFrameClock.postFrameCallback();
+                return;
+            }
+        }
+
+        // Done with scroll, clean up state.
+        completeScroll();
+    }
+
+    private void smoothScrollToCurrentPosition() {
+        int[] pos = getDestScrollPosForState(mCurrentState);
+        smoothScrollTo(pos[0], pos[1]);
+    }
+
+    /**
+     * Brings the layer back to the position of its current state after it was caught by a touch that did not
+     * change its state, finishing any action that was left pending.
+     */
+    private void resumeScroll() {
+        if (!mScrolling) {
+            smoothScrollToCurrentPosition();
+        }
+    }
+
+    float distanceInfluenceForSnapDuration(float f) {
+        return sSnapDurationInfluence.getInterpolation(f);
+    }
+
+    /**
+     * Clamps a horizontal scroll reached while dragging to the range the layer can be dragged through.
+     */
+    private float clampDragScrollX(float scrollX) {
+        switch (mScreenSide) {
+        case STICK_TO_LEFT:
+            // How far left we can scroll
+            return Math.max(0, Math.min(getWidth(), scrollX));
+        case STICK_TO_RIGHT:
+            return Math.max(-getWidth(), Math.min(0, scrollX));
+        default:
+            return 0;
+        }
+    }
 
-        mScroller.startScroll(sx, sy, dx, dy, duration);
-        ViewCompat.postInvalidateOnAnimation(this);
+    /**
+     * Clamps a vertical scroll reached while dragging to the range the layer can be dragged through.
+     */
+    private float clampDragScrollY(float scrollY) {
+        switch (mScreenSide) {
+        case STICK_TO_TOP:
+            return Math.max(0, Math.min(getHeight(), scrollY));
+        case STICK_TO_BOTTOM:
+            return Math.max(-getHeight(), Math.min(0, scrollY));
+        default:
+            return 0;
+        }
     }
 
-    private void smoothScrollToCurrentPosition() {
-        int[] pos = getDestScrollPosForState(mCurrentState);
-        smoothScrollTo(pos[0], pos[1]);
+    /**
+     * Extrapolates a horizontal scroll reached while dragging to where the finger is expected to be once the frame
+     * is displayed.
+     *
+     * @param velocityX Horizontal velocity of the finger, in pixels per second
+     */
+    private float predictDragScrollX(float scrollX, float velocityX) {
+        // The layer scrolls in the opposite direction of the finger
+        return clampDragScrollX(scrollX - velocityX * getTouchPredictionLookAhead() / 1000f);
     }
 
-    // We want the duration of the page snap animation to be influenced by the
-    // distance that
-    // the screen has to travel, however, we don't want this duration to be
-    // effected in a
-    // purely linear fashion. Instead, we use this method to moderate the effect
-    // that the distance
-    // of travel has on the overall snap duration.
-    float distanceInfluenceForSnapDuration(float f) {
-        f -= 0.5f; // center the values about 0.
-        f *= 0.3f * Math.PI / 2.0f;
-        return (float) Math.sin(f);
+    /**
+     * @param velocityY Vertical velocity of the finger, in pixels per second
+     * @see #predictDragScrollX(float, float)
+     */
+    private float predictDragScrollY(float scrollY, float velocityY) {
+        return clampDragScrollY(scrollY - velocityY * getTouchPredictionLookAhead() / 1000f);
     }
 
     private void endDrag() {
         mIsDragging = false;
         mIsUnableToDrag = false;
+        mVelocityEstimator.clear();
+    }
+
+    /**
+     * Stops any animation and starts dragging the layer from wherever it is.
+     */
+    private void startDrag() {
+        stopScroll();
+        mIsDragging = true;
+        // Not from where the previous drag left it, the layer has settled since
+        mDragScrollX = getLayerScrollX();
+        mDragScrollY = getLayerScrollY();
+        setMoving(true);
+    }
+
+    /**
+     * Marks the start or the end of a drag or a settle animation of the layer.
+     */
+    private void setMoving(boolean moving) {
+
+        if (moving) {
+            redrawIfSkipped();
+        }
 
-        if (mVelocityTracker != null) {
-            mVelocityTracker.recycle();
-            mVelocityTracker = null;
+        if (!mSnapshotModeEnabled) {
+            setDrawingCacheEnabled(moving);
+        }
+
+        if (mMoving != moving) {
+            mMoving = moving;
+            updateLayerType();
+
+            if (mSnapshotModeEnabled) {
+                // Content might have changed since the last time, a snapshot is taken for every gesture
+                mSnapshotDirty = true;
+                if (!moving) {
+                    releaseSnapshot();
+                }
+                invalidate();
+            }
         }
     }
 
@@ -1065,11 +2310,24 @@ public class SlidingLayer extends FrameLayout {
             // This was our active pointer going up. Choose a new
             // active pointer and adjust accordingly.
             final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
-            mLastX = ev.getX(newPointerIndex);
+            mLastX = getViewX(ev, newPointerIndex);
+            mLastY = getViewY(ev, newPointerIndex);
             mActivePointerId = ev.getPointerId(newPointerIndex);
-            if (mVelocityTracker != null) {
-                mVelocityTracker.clear();
+            mVelocityEstimator.clear();
+        }
+    }
+
+    /**
+     * Stops the current animation, if any, leaving the layer wherever it is. Contrary to {@link #completeScroll()}
+     * the pending action is not notified as finished, so it can be resumed or retargeted afterwards.
+     */
+    private void stopScroll() {
+        if (mScrolling) {
+            if (mActiveSettleEngine != null) {
+                mActiveSettleEngine.forceFinished(true);
             }
+            mFrameClock.removeFrameCallback();
+            mScrolling = false;
         }
     }
 
@@ -1078,53 +2336,198 @@ public class SlidingLayer extends FrameLayout {
         boolean needPopulate = mScrolling;
         if (needPopulate) {
             // Done with scroll, no longer want to cache view drawing.
-            setDrawingCacheEnabled(false);
-            mScroller.abortAnimation();
-            int oldX = getScrollX();
-            int oldY = getScrollY();
-            int x = mScroller.getCurrX();
-            int y = mScroller.getCurrY();
+            setMoving(false);
+            abortScrollAnimation();
+            int oldX = getLayerScrollX();
+            int oldY = getLayerScrollY();
+            int x = getCurrScrollX();
+            int y = getCurrScrollY();
             if (oldX != x || oldY != y) {
                 scrollToAndNotify(x, y);
             }
+            mScrolling = false;
+            finishAction();
+        }
+        mScrolling = false;
+    }
+
+    private void finishAction() {
+        if (mPendingActionState != INVALID_VALUE) {
+            mPendingActionState = INVALID_VALUE;
             if (mOnInteractListener != null) {
                 notifyActionFinished();
             }
         }
-        mScrolling = false;
+    }
+
+    /**
+     * @return The horizontal position of the layer, expressed as the scroll of its content regardless of whether it
+     * is positioned by scrolling or translating
+     */
+    private int getLayerScrollX() {
+        return mTranslationMode ? -Math.round(getTranslationX()) : getScrollX();
+    }
+
+    /**
+     * @return The vertical position of the layer, expressed as the scroll of its content regardless of whether it
+     * is positioned by scrolling or translating
+     */
+    private int getLayerScrollY() {
+        return mTranslationMode ? -Math.round(getTranslationY()) : getScrollY();
+    }
+
+    private void setLayerScroll(int x, int y) {
+        redrawIfSkipped();
+        if (mTranslationMode) {
+            setTranslationX(-x);
+            setTranslationY(-y);
+        } else {
+            scrollTo(x, y);
+        }
+    }
+
+    private void trackMovement(MotionEvent ev) {
+        if (mTranslationMode) {
+            // The layer moves along with the finger, track it where it is laid out instead
+            mVelocityEstimator.addMovement(ev, mActivePointerId, getTranslationX(), getTranslationY());
+        } else {
+            mVelocityEstimator.addMovement(ev, mActivePointerId, 0, 0);
+        }
     }
 
     private void scrollToAndNotify(int x, int y) {
 
-        scrollTo(x, y);
+        setLayerScroll(x, y);
+
+        if (!mTranslationMode && isElevationShadow()) {
+            // The content scrolls within the bounds of the view, the shadow has to follow it
+            invalidateOutline();
+        }
+
+        if (mScrim != null) {
+            updateScrim(x, y);
+        }
+
+        requestProgressDispatch();
 
         if (mOnScrollListener == null && mLayerTransformer == null) {
             return;
         }
 
-        int scroll;
-        if (allowedDirection() == VERTICAL) {
-            scroll = getHeight() - Math.abs(y);
-        } else {
-            scroll = getWidth() - Math.abs(x);
-        }
+        final int absoluteScroll = getAbsoluteScroll(x, y);
 
         if (mOnScrollListener != null) {
-            mOnScrollListener.onScroll(Math.abs(scroll));
+            mOnScrollListener.onScroll(absoluteScroll);
         }
 
         if (mLayerTransformer != null) {
+            transformLayer(absoluteScroll, true);
+        }
+    }
+
+    /**
+     * Notify {@link #mOnProgressListener} on the next frame. Requests made before it comes are merged into one.
+     */
+    private void requestProgressDispatch() {
+        if (mOnProgressListener != null) {
+            mProgressClock.postFrameCallback();
+        }
+    }
+
+    private void dispatchProgress(long frameTimeNanos) {
+
+        if (mOnProgressListener == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+
+        final int absoluteScroll = getAbsoluteScroll(getLayerScrollX(), getLayerScrollY());
+        final float layerProgress = getLayerProgress(absoluteScroll);
+
+        if (layerProgress == mDispatchedProgress && mCurrentState == mDispatchedState && mDispatchedVelocity == 0) {
+            // Nothing changed since the layer was notified at rest
+            mProgressFrameTimeNanos = 0;
+            return;
+        }
+
+        // After a pause the layer moved during the last frame only
+        final long intervalNanos = mProgressFrameTimeNanos > 0 ?
+                frameTimeNanos - mProgressFrameTimeNanos :
+                mProgressClock.getFrameIntervalNanos();
+
+        float velocity = 0;
+        if (mDispatchedProgress != INVALID_VALUE && intervalNanos > 0) {
+            velocity = (layerProgress - mDispatchedProgress) * 1000000000f / intervalNanos;
+        }
+
+        mDispatchedProgress = layerProgress;
+        mDispatchedVelocity = velocity;
+        mDispatchedState = mCurrentState;
+        mProgressFrameTimeNanos = frameTimeNanos;
+
+        mOnProgressListener.onProgress(layerProgress, getPreviewProgress(absoluteScroll), velocity, mCurrentState);
+
+        // Keep watching for one more frame, so that the layer coming to rest is notified with no velocity
+        mProgressClock.postFrameCallback();
+    }
 
-            int absoluteScroll = Math.abs(scroll);
-            int layerSize = allowedDirection() == HORIZONTAL ? getMeasuredWidth() : getMeasuredHeight();
+    private void transformLayer(int absoluteScroll, boolean includeLayer) {
 
-            float layerProgress = (float) absoluteScroll / layerSize;
-            float previewProgress = mPreviewOffsetDistance > 0 ?
-                    Math.min(1, (float) absoluteScroll / mPreviewOffsetDistance) :
-                    0;
+        final float previewProgress = getPreviewProgress(absoluteScroll);
+        final float layerProgress = getLayerProgress(absoluteScroll);
 
+        if (includeLayer) {
             mLayerTransformer.internalTransform(this, previewProgress, layerProgress, mScreenSide);
         }
+
+        if (mLayerChildren.getCount() > 0) {
+            mLayerTransformer.transformChildren(mLayerChildren, previewProgress, layerProgress, mScreenSide);
+        }
+    }
+
+    /**
+     * Brings the scrim to the given position of the layer.
+     */
+    private void updateScrim(int x, int y) {
+
+        int left = getLeft() - x;
+        int top = getTop() - y;
+        int right = getRight() - x;
+        int bottom = getBottom() - y;
+
+        if (!mTranslationMode) {
+            // Scrolled content is cut by the bounds of the layer
+            left = Math.max(left, getLeft());
+            top = Math.max(top, getTop());
+            right = Math.min(right, getRight());
+            bottom = Math.min(bottom, getBottom());
+        }
+
+        mScrim.update(getLayerProgress(getAbsoluteScroll(x, y)), left, top, right, bottom);
+    }
+
+    /**
+     * @return How much of the layer is visible, in pixels, when scrolled to the given position
+     */
+    private int getAbsoluteScroll(int x, int y) {
+
+        int scroll;
+        if (allowedDirection() == VERTICAL) {
+            scroll = getHeight() - Math.abs(y);
+        } else {
+            scroll = getWidth() - Math.abs(x);
+        }
+        return Math.abs(scroll);
+    }
+
+    private float getLayerProgress(int absoluteScroll) {
+        int layerSize = allowedDirection() == HORIZONTAL ? getMeasuredWidth() : getMeasuredHeight();
+        return (float) absoluteScroll / layerSize;
+    }
+
+    private float getPreviewProgress(int absoluteScroll) {
+        return mPreviewOffsetDistance > 0 ?
+                Math.min(1, (float) absoluteScroll / mPreviewOffsetDistance) :
+                0;
     }
 
     /**
@@ -1137,6 +2540,10 @@ public class SlidingLayer extends FrameLayout {
     public void setStickTo(int screenSide) {
         mForceLayout = true;
         mScreenSide = screenSide;
+        mShadowCache.invalidate();
+        if (isElevationShadow()) {
+            invalidateOutline();
+        }
         setLayerState(STATE_CLOSED, false, true);
     }
 
@@ -1160,6 +2567,32 @@ public class SlidingLayer extends FrameLayout {
         this.changeStateOnTap = changeStateOnTap;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mFrameClock.updateRefreshRate();
+        mProgressClock.updateRefreshRate();
+        requestProgressDispatch();
+
+        if (mScrim != null && getParent() instanceof ViewGroup) {
+            mScrim.attach((ViewGroup) getParent());
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // Frames stop coming once detached, land the layer where it was heading to
+        completeScroll();
+
+        if (mScrim != null) {
+            mScrim.detach();
+        }
+        mShadowCache.release();
+        mProgressClock.removeFrameCallback();
+        mProgressFrameTimeNanos = 0;
+        super.onDetachedFromWindow();
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 
@@ -1191,7 +2624,7 @@ public class SlidingLayer extends FrameLayout {
         if (scrollMustChange) {
             completeScroll();
             int[] pos = getDestScrollPosForState(mCurrentState);
-            scrollTo(pos[0], pos[1]);
+            setLayerScroll(pos[0], pos[1]);
         }
     }
 
@@ -1214,6 +2647,21 @@ public class SlidingLayer extends FrameLayout {
         }
 
         super.onLayout(changed, left, top, right, bottom);
+
+        // Children might have moved
+        invalidateSnapshot();
+
+        mLayerChildren.resolve(this);
+        mScrollableIndex.rebuild(this);
+        if (mLayerTransformer != null && mLayerChildren.getCount() > 0) {
+            // Descendants that just showed up catch up with the layer
+            transformLayer(getAbsoluteScroll(getLayerScrollX(), getLayerScrollY()), false);
+        }
+
+        if (mScrim != null) {
+            // The layer or its parent might have moved or been resized
+            updateScrim(getLayerScrollX(), getLayerScrollY());
+        }
     }
 
     @Override
@@ -1270,12 +2718,13 @@ public class SlidingLayer extends FrameLayout {
     /**
      * Get the destination position based on the velocity
      *
-     * @return
+     * @return The scroll position of the state. The array is reused by every call, read it right away
      * @since 1.0
      */
     private int[] getDestScrollPosForState(int state) {
 
-        int[] pos = new int[2];
+        final int[] pos = mDestScrollPos;
+        pos[0] = pos[1] = 0;
 
         if (state == STATE_OPENED) {
             return pos;
@@ -1306,48 +2755,230 @@ public class SlidingLayer extends FrameLayout {
         return getLeft() + getPaddingLeft();
     }
 
+    @Override
+    public void draw(Canvas canvas) {
+        // Nothing of the layer is on screen, nothing to draw
+        mDrawSkipped = isFullyHidden();
+        if (!mDrawSkipped) {
+            super.draw(canvas);
+        }
+    }
+
+    /**
+     * Moving the layer by its properties does not draw it again, which is needed if it was skipped while hidden.
+     */
+    private void redrawIfSkipped() {
+        if (mDrawSkipped) {
+            mDrawSkipped = false;
+            invalidate();
+        }
+    }
+
     @Override
     protected void dispatchDraw(Canvas canvas) {
+
+        mCulledChildCount = 0;
+
+        if (!mSnapshotModeEnabled || !mMoving || !drawSnapshot(canvas)) {
+            drawVisibleChildren(canvas);
+        }
+
+        // Draw the margin drawable if needed. Elevation shadows are drawn by the render thread instead
+        if (mShadowSize > 0 && mShadowDrawable != null && !isElevationShadow()) {
+
+            getShadowBounds(mShadowBounds);
+            final Rect bounds = mShadowBounds;
+
+            if (mShadowMode == SHADOW_MODE_CACHED) {
+                mShadowCache.draw(canvas, mShadowDrawable, bounds.left, bounds.top, bounds.right, bounds.bottom);
+            } else {
+                mShadowDrawable.setBounds(bounds);
+                mShadowDrawable.draw(canvas);
+            }
+        }
+    }
+
+    /**
+     * Draw the children that are at least partly on screen, clipped to the part of the layer that is.
+     */
+    private void drawVisibleChildren(Canvas canvas) {
+
+        if (!getVisibleRect(mVisibleRect)) {
+            // The layer is transformed, what is on screen is not known
+            super.dispatchDraw(canvas);
+            return;
+        }
+
+        if (mVisibleRect.isEmpty()) {
+            mCulledChildCount = getChildCount();
+            return;
+        }
+
+        final int saveCount = canvas.save();
+        canvas.clipRect(mVisibleRect);
+        mCulling = true;
         super.dispatchDraw(canvas);
-        // Draw the margin drawable if needed.
-        if (mShadowSize > 0 && mShadowDrawable != null) {
-            if (mScreenSide == STICK_TO_RIGHT) {
-                mShadowDrawable.setBounds(0, 0, mShadowSize, getHeight());
+        mCulling = false;
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+
+        if (mCulling) {
+            // Bounds of the child once transformed, in the coordinates of the layer
+            child.getHitRect(mChildRect);
+            if (!Rect.intersects(mVisibleRect, mChildRect)) {
+                mCulledChildCount++;
+                return false;
             }
-            if (mScreenSide == STICK_TO_TOP) {
-                mShadowDrawable.setBounds(0, getHeight() - mShadowSize, getWidth(), getHeight());
+        }
+
+        return super.drawChild(canvas, child, drawingTime);
+    }
+
+    /**
+     * @param rect Set to the part of the content of the layer that is on screen, in the coordinates its children
+     *             are laid out in. Empty if none.
+     * @return false if it cannot be told because the layer is rotated or scaled
+     */
+    private boolean getVisibleRect(Rect rect) {
+
+        // Views can only be scaled or rotated from Honeycomb on
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && (getScaleX() != 1 || getScaleY() != 1 ||
+                getRotation() != 0 || getRotationX() != 0 || getRotationY() != 0)) {
+            return false;
+        }
+
+        final int width = getWidth();
+        final int height = getHeight();
+        rect.set(0, 0, width, height);
+
+        boolean visible;
+        if (mTranslationMode) {
+            // The layer is moved within its parent, which cuts it
+            if (!(getParent() instanceof View)) {
+                return true;
             }
-            if (mScreenSide == STICK_TO_LEFT) {
-                mShadowDrawable.setBounds(getWidth() - mShadowSize, 0, getWidth(), getHeight());
+            final View parent = (View) getParent();
+            final int left = -getLeft() - Math.round(getTranslationX());
+            final int top = -getTop() - Math.round(getTranslationY());
+            visible = rect.intersect(left, top, left + parent.getWidth(), top + parent.getHeight());
+        } else {
+            // The content is scrolled within the bounds of the layer
+            final int scrollX = getScrollX();
+            final int scrollY = getScrollY();
+            visible = rect.intersect(scrollX, scrollY, scrollX + width, scrollY + height);
+        }
+
+        if (!visible) {
+            rect.setEmpty();
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the layer is closed, at rest, with no offset sticking out
+     */
+    private boolean isFullyHidden() {
+        return mCurrentState == STATE_CLOSED && mOffsetDistance == 0 && !mScrolling && !mIsDragging;
+    }
+
+    /**
+     * @return Number of children that were not drawn in the last draw pass of the layer because none of them was on
+     * screen. All of them when the layer was not drawn at all.
+     */
+    public int getCulledChildCount() {
+        return isFullyHidden() ? getChildCount() : mCulledChildCount;
+    }
+
+    /**
+     * @param bounds Set to the band of the view the shadow is drawn on, in the coordinates of the view
+     */
+    private void getShadowBounds(Rect bounds) {
+        switch (mScreenSide) {
+        case STICK_TO_RIGHT:
+            bounds.set(0, 0, mShadowSize, getHeight());
+            break;
+        case STICK_TO_TOP:
+            bounds.set(0, getHeight() - mShadowSize, getWidth(), getHeight());
+            break;
+        case STICK_TO_LEFT:
+            bounds.set(getWidth() - mShadowSize, 0, getWidth(), getHeight());
+            break;
+        case STICK_TO_BOTTOM:
+            bounds.set(0, 0, getWidth(), mShadowSize);
+            break;
+        default:
+            bounds.setEmpty();
+        }
+    }
+
+    /**
+     * Outline of the content of the layer, excluding the band reserved for the shadow, where the content currently
+     * is within the view.
+     */
+    private class ContentOutlineProvider extends ViewOutlineProvider {
+
+        private final Rect mShadowBand = new Rect();
+
+        @Override
+        public void getOutline(View view, Outline outline) {
+
+            int left = 0;
+            int top = 0;
+            int right = getWidth();
+            int bottom = getHeight();
+
+            getShadowBounds(mShadowBand);
+            switch (mScreenSide) {
+            case STICK_TO_RIGHT:
+                left = mShadowBand.right;
+                break;
+            case STICK_TO_TOP:
+                bottom = mShadowBand.top;
+                break;
+            case STICK_TO_LEFT:
+                right = mShadowBand.left;
+                break;
+            case STICK_TO_BOTTOM:
+                top = mShadowBand.bottom;
+                break;
             }
-            if (mScreenSide == STICK_TO_BOTTOM) {
-                mShadowDrawable.setBounds(0, 0, getWidth(), mShadowSize);
+
+            if (!mTranslationMode) {
+                // Scrolled content is cut by the bounds of the view
+                final int scrollX = getScrollX();
+                final int scrollY = getScrollY();
+                left = Math.max(0, left - scrollX);
+                top = Math.max(0, top - scrollY);
+                right = Math.min(getWidth(), right - scrollX);
+                bottom = Math.min(getHeight(), bottom - scrollY);
             }
-            mShadowDrawable.draw(canvas);
+
+            outline.setRect(left, top, Math.max(left, right), Math.max(top, bottom));
         }
     }
 
-    @Override
-    public void computeScroll() {
-        if (!mScroller.isFinished()) {
-            if (mScroller.computeScrollOffset()) {
-                final int oldX = getScrollX();
-                final int oldY = getScrollY();
-                final int x = mScroller.getCurrX();
-                final int y = mScroller.getCurrY();
-
-                if (oldX != x || oldY != y) {
-                    scrollToAndNotify(x, y);
-                }
+    private void abortScrollAnimation() {
+        if (mActiveSettleEngine != null) {
+            mActiveSettleEngine.abortAnimation();
+        }
+        mFrameClock.removeFrameCallback();
+    }
 
-                // Keep on drawing until the animation has finished.
-                ViewCompat.postInvalidateOnAnimation(this);
-                return;
-            }
+    private int getCurrScrollX() {
+        if (mActiveSettleEngine == null || allowedDirection() != HORIZONTAL) {
+            return getLayerScrollX();
         }
+        return Math.round(mActiveSettleEngine.getCurrPosition());
+    }
 
-        // Done with scroll, clean up state.
-        completeScroll();
+    private int getCurrScrollY() {
+        if (mActiveSettleEngine == null || allowedDirection() != VERTICAL) {
+            return getLayerScrollY();
+        }
+        return Math.round(mActiveSettleEngine.getCurrPosition());
     }
 
     /**
@@ -1442,6 +3073,25 @@ public class SlidingLayer extends FrameLayout {
         void onScroll(int absoluteScroll);
     }
 
+    /**
+     * Interface definition for a callback to be invoked with the progress of the layer, at most once per frame.
+     */
+    public interface OnProgressListener {
+
+        /**
+         * Callback method to be invoked on the frame following any change of the position or the state of the
+         * layer, and once more when the layer comes to rest.
+         *
+         * @param layerProgress   How much of the layer is visible [0 - 1]
+         * @param previewProgress How much of the preview is visible [0 - 1], 0 if the layer has no preview
+         * @param velocity        Change of the layer progress per second since the previous call, positive while
+         *                        the layer opens and 0 once it rests
+         * @param state           State the layer is in or heading to, one of {@link #STATE_CLOSED},
+         *                        {@link #STATE_PREVIEW} or {@link #STATE_OPENED}
+         */
+        void onProgress(float layerProgress, float previewProgress, float velocity, int state);
+    }
+
     static class SavedState extends BaseSavedState {
 
         Bundle mState;
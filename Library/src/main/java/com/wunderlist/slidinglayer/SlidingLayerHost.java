@@ -0,0 +1,375 @@
+/*
+ * SlidingLayerHost.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer;
+
+import android.content.Context;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.ViewConfigurationCompat;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.RelativeLayout;
+
+import com.wunderlist.slidinglayer.utils.VelocityEstimator;
+
+/**
+ * Container for several {@link SlidingLayer}s that recognizes drags once for all of them. Layers within a host do
+ * not intercept touches themselves: the host tracks the gesture with a single velocity estimator, tests which layers
+ * are under the touch once when it goes down, and hands the drag to exactly one of them once its direction is known.
+ * <p/>
+ * The drag goes to the topmost layer under the touch that slides along the axis the finger moves the most on, and
+ * that can move that way. Diagonal drags therefore go to a single layer, never to several. A drag the content of the
+ * topmost layer under the touch can scroll with is left to the content.
+ * <p/>
+ * Taps on the scrim of a layer are taken by the host before any of its children, and close the layer.
+ */
+public class SlidingLayerHost extends RelativeLayout {
+
+    private static final int INVALID_POINTER = -1;
+
+    private final VelocityEstimator mVelocityEstimator = new VelocityEstimator();
+    private int mTouchSlop;
+    private int mMaximumVelocity;
+
+    /**
+     * Layers under the touch, from the topmost one
+     */
+    private SlidingLayer[] mCandidates = new SlidingLayer[2];
+    private int mCandidateCount;
+
+    private SlidingLayer mDragTarget;
+    private boolean mDragStarted;
+    private boolean mUnableToDrag;
+
+    /**
+     * Layer whose scrim the touch went down on, and whether the touch is still a tap
+     */
+    private SlidingLayer mScrimTarget;
+    private boolean mScrimTap;
+
+    private int mActivePointerId = INVALID_POINTER;
+    private float mInitialX;
+    private float mInitialY;
+    private float mLastX;
+    private float mLastY;
+
+    public SlidingLayerHost(Context context) {
+        this(context, null);
+    }
+
+    public SlidingLayerHost(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public SlidingLayerHost(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+
+        final ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = ViewConfigurationCompat.getScaledPagingTouchSlop(configuration);
+        mMaximumVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+
+        switch (ev.getAction() & MotionEvent.ACTION_MASK) {
+        case MotionEvent.ACTION_DOWN:
+            reset();
+            mActivePointerId = ev.getPointerId(0);
+            mInitialX = mLastX = ev.getX();
+            mInitialY = mLastY = ev.getY();
+            mVelocityEstimator.addMovement(ev, mActivePointerId, 0, 0);
+
+            // Nothing under a scrim gets the touch
+            mScrimTarget = findScrimTarget(mInitialX, mInitialY);
+            if (mScrimTarget != null) {
+                mScrimTap = true;
+                return true;
+            }
+
+            findCandidates(mInitialX, mInitialY);
+            mUnableToDrag = mCandidateCount == 0;
+            return false;
+
+        case MotionEvent.ACTION_MOVE:
+
+            if (mUnableToDrag) {
+                return false;
+            } else if (mDragTarget != null) {
+                return true;
+            }
+
+            mVelocityEstimator.addMovement(ev, mActivePointerId, 0, 0);
+
+            final int pointerIndex = ev.findPointerIndex(mActivePointerId);
+            if (pointerIndex < 0) {
+                return false;
+            }
+
+            final float x = ev.getX(pointerIndex);
+            final float y = ev.getY(pointerIndex);
+            final float dx = x - mInitialX;
+            final float dy = y - mInitialY;
+            final float xDiff = Math.abs(dx);
+            final float yDiff = Math.abs(dy);
+
+            final boolean horizontal = xDiff > mTouchSlop && xDiff > yDiff;
+            final boolean vertical = yDiff > mTouchSlop && yDiff > xDiff;
+            if (!horizontal && !vertical) {
+                return false;
+            }
+
+            mDragTarget = assignDrag(horizontal, horizontal ? dx : dy, x, y);
+            if (mDragTarget == null) {
+                // Whatever the drag is, it is not for the layers
+                mUnableToDrag = true;
+                return false;
+            }
+            mDragTarget.claimHostDrag();
+
+            mLastX = x;
+            mLastY = y;
+            return true;
+
+        case MotionEvent.ACTION_POINTER_UP:
+            onSecondaryPointerUp(ev);
+            return false;
+
+        case MotionEvent.ACTION_UP:
+        case MotionEvent.ACTION_CANCEL:
+            reset();
+            return false;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+
+        if (mScrimTarget != null) {
+            onScrimTouchEvent(ev);
+            return true;
+        }
+
+        if (mDragTarget == null) {
+            return super.onTouchEvent(ev);
+        }
+
+        mVelocityEstimator.addMovement(ev, mActivePointerId, 0, 0);
+
+        switch (ev.getAction() & MotionEvent.ACTION_MASK) {
+        case MotionEvent.ACTION_MOVE: {
+
+            final int pointerIndex = ev.findPointerIndex(mActivePointerId);
+            if (pointerIndex < 0) {
+                break;
+            }
+
+            // The layer only starts dragging once its own handling of the gesture has been cancelled
+            if (!mDragStarted) {
+                mDragStarted = true;
+                mDragTarget.startHostDrag();
+            }
+
+            float velocityX = 0;
+            float velocityY = 0;
+            if (mDragTarget.isTouchPredictionEnabled()) {
+                mVelocityEstimator.computeVelocity(1000, mMaximumVelocity);
+                velocityX = mVelocityEstimator.getXVelocity();
+                velocityY = mVelocityEstimator.getYVelocity();
+            }
+
+            final float x = ev.getX(pointerIndex);
+            final float y = ev.getY(pointerIndex);
+            mDragTarget.hostDragBy(x - mLastX, y - mLastY, velocityX, velocityY);
+            mLastX = x;
+            mLastY = y;
+            break;
+        }
+
+        case MotionEvent.ACTION_UP:
+            if (mDragStarted) {
+                mVelocityEstimator.computeVelocity(1000, mMaximumVelocity);
+                mDragTarget.endHostDrag((int) mVelocityEstimator.getXVelocity(),
+                        (int) mVelocityEstimator.getYVelocity(), (int) mInitialX, (int) mInitialY, (int) mLastX,
+                        (int) mLastY);
+            } else {
+                // The layer did not resume its scroll when its own touch was cancelled, it is up to the host
+                mDragTarget.cancelHostDrag();
+            }
+            reset();
+            break;
+
+        case MotionEvent.ACTION_CANCEL:
+            mDragTarget.cancelHostDrag();
+            reset();
+            break;
+
+        case MotionEvent.ACTION_POINTER_DOWN: {
+            final int pointerIndex = ev.getActionIndex();
+            mActivePointerId = ev.getPointerId(pointerIndex);
+            mLastX = ev.getX(pointerIndex);
+            mLastY = ev.getY(pointerIndex);
+            break;
+        }
+
+        case MotionEvent.ACTION_POINTER_UP:
+            onSecondaryPointerUp(ev);
+            break;
+        }
+
+        return true;
+    }
+
+    private void onScrimTouchEvent(MotionEvent ev) {
+
+        switch (ev.getAction() & MotionEvent.ACTION_MASK) {
+        case MotionEvent.ACTION_MOVE: {
+            final int pointerIndex = ev.findPointerIndex(mActivePointerId);
+            if (pointerIndex >= 0 && (Math.abs(ev.getX(pointerIndex) - mInitialX) > mTouchSlop ||
+                    Math.abs(ev.getY(pointerIndex) - mInitialY) > mTouchSlop)) {
+                mScrimTap = false;
+            }
+            break;
+        }
+
+        case MotionEvent.ACTION_POINTER_DOWN:
+            mScrimTap = false;
+            break;
+
+        case MotionEvent.ACTION_UP:
+            if (mScrimTap && mScrimTarget.isOnScrim(ev.getX(), ev.getY())) {
+                mScrimTarget.closeLayer(true);
+            }
+            reset();
+            break;
+
+        case MotionEvent.ACTION_CANCEL:
+            reset();
+            break;
+        }
+    }
+
+    /**
+     * @return The topmost layer whose scrim is drawn under the touch, null if none
+     */
+    private SlidingLayer findScrimTarget(float x, float y) {
+
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            final View child = getChildAt(i);
+            if (child instanceof SlidingLayer && child.getVisibility() == VISIBLE &&
+                    ((SlidingLayer) child).isOnScrim(x, y)) {
+                return (SlidingLayer) child;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Collect the layers the touch can drag, from the topmost one.
+     */
+    private void findCandidates(float x, float y) {
+
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+
+            final View child = getChildAt(i);
+            if (!(child instanceof SlidingLayer) || child.getVisibility() != VISIBLE) {
+                continue;
+            }
+
+            final SlidingLayer layer = (SlidingLayer) child;
+            if (layer.onHostTouchDown(toLayerX(layer, x), toLayerY(layer, y))) {
+                if (mCandidateCount == mCandidates.length) {
+                    final SlidingLayer[] candidates = new SlidingLayer[mCandidateCount * 2];
+                    System.arraycopy(mCandidates, 0, candidates, 0, mCandidateCount);
+                    mCandidates = candidates;
+                }
+                mCandidates[mCandidateCount++] = layer;
+            }
+        }
+    }
+
+    /**
+     * @param horizontal true if the finger moves mostly horizontally, false if vertically
+     * @param delta      Movement of the finger along that axis
+     * @return The layer the drag belongs to, null if none
+     */
+    private SlidingLayer assignDrag(boolean horizontal, float delta, float x, float y) {
+
+        final SlidingLayer topmost = mCandidates[0];
+        if (topmost.canContentScroll(toLayerX(topmost, x), toLayerY(topmost, y), horizontal, delta)) {
+            return null;
+        }
+
+        for (int i = 0; i < mCandidateCount; i++) {
+            final SlidingLayer layer = mCandidates[i];
+            if (layer.isHorizontal() == horizontal &&
+                    layer.canDragBy(horizontal ? delta : 0, horizontal ? 0 : delta)) {
+                return layer;
+            }
+        }
+
+        return null;
+    }
+
+    private static float toLayerX(SlidingLayer layer, float x) {
+        return x - layer.getLeft() - ViewCompat.getTranslationX(layer);
+    }
+
+    private static float toLayerY(SlidingLayer layer, float y) {
+        return y - layer.getTop() - ViewCompat.getTranslationY(layer);
+    }
+
+    private void onSecondaryPointerUp(MotionEvent ev) {
+        final int pointerIndex = ev.getActionIndex();
+        final int pointerId = ev.getPointerId(pointerIndex);
+        if (pointerId == mActivePointerId) {
+            // This was our active pointer going up. Choose a new active pointer and adjust accordingly.
+            final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
+            mLastX = ev.getX(newPointerIndex);
+            mLastY = ev.getY(newPointerIndex);
+            mActivePointerId = ev.getPointerId(newPointerIndex);
+            mVelocityEstimator.clear();
+        }
+    }
+
+    private void reset() {
+
+        for (int i = 0; i < mCandidateCount; i++) {
+            mCandidates[i] = null;
+        }
+        mCandidateCount = 0;
+
+        mDragTarget = null;
+        mDragStarted = false;
+        mScrimTarget = null;
+        mScrimTap = false;
+        mUnableToDrag = false;
+        mActivePointerId = INVALID_POINTER;
+        mVelocityEstimator.clear();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * DecaySettleEngine.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.settle;
+
+import com.wunderlist.slidinglayer.SettleEngine;
+
+/**
+ * Settles the layer as a fling that decelerates under friction. The friction is chosen when the animation starts
+ * so that the fling comes to rest exactly at the target, which keeps the release velocity untouched.
+ * <p/>
+ * If the layer is not moving towards its target, or too slowly to reach it with a reasonable friction, the
+ * animation falls back to a {@link SpringSettleEngine}.
+ */
+public final class DecaySettleEngine extends SettleEngine {
+
+    /**
+     * Minimum friction, in 1/s. Lower values would make the fling crawl towards its target for too long.
+     */
+    public static final float DEFAULT_MIN_FRICTION = 6f;
+
+    private final float mMinFriction;
+    private final SpringSettleEngine mFallback;
+
+    private float mFriction;
+    private boolean mUseFallback;
+
+    public DecaySettleEngine() {
+        this(DEFAULT_MIN_FRICTION, new SpringSettleEngine());
+    }
+
+    /**
+     * @param minFriction Minimum friction the fling is allowed to settle with, in 1/s
+     * @param fallback    Engine used when the velocity of the layer is not enough to reach its target
+     */
+    public DecaySettleEngine(float minFriction, SpringSettleEngine fallback) {
+
+        if (minFriction <= 0) {
+            throw new IllegalArgumentException("The minimum friction has to be greater than 0");
+        }
+
+        mMinFriction = minFriction;
+        mFallback = fallback;
+    }
+
+    @Override
+    protected void onStart() {
+
+        final float distance = mTarget - mPosition;
+        mFriction = distance != 0 ? mVelocity / distance : 0;
+        mUseFallback = mFriction < mMinFriction;
+
+        if (mUseFallback) {
+            mFallback.start(mPosition, mVelocity, mTarget);
+        }
+    }
+
+    @Override
+    protected boolean onStep(float deltaTime) {
+
+        if (mUseFallback) {
+            final boolean running = mFallback.computeOffset(deltaTime) && !mFallback.isFinished();
+            mPosition = mFallback.getCurrPosition();
+            mVelocity = mFallback.getCurrVelocity();
+            return !running;
+        }
+
+        final float decay = (float) Math.exp(-mFriction * deltaTime);
+        mPosition = mTarget - (mTarget - mPosition) * decay;
+        mVelocity *= decay;
+
+        return Math.abs(mTarget - mPosition) < REST_DISTANCE;
+    }
+}
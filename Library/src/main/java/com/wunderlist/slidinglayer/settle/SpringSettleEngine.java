@@ -0,0 +1,129 @@
+/*
+ * SpringSettleEngine.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.settle;
+
+import com.wunderlist.slidinglayer.SettleEngine;
+
+/**
+ * Settles the layer as a damped harmonic oscillator attached to its target. The oscillator is solved analytically
+ * on every step, so the result does not depend on the frame rate and stays stable for long frames.
+ */
+public final class SpringSettleEngine extends SettleEngine {
+
+    public static final float DEFAULT_STIFFNESS = 500f;
+    public static final float DEFAULT_DAMPING_RATIO = 1f;
+
+    private final float mNaturalFrequency;
+    private final float mDampingRatio;
+
+    // Only used when the spring is underdamped
+    private final float mDampedFrequency;
+
+    // Only used when the spring is overdamped
+    private final float mOverdampedRootA;
+    private final float mOverdampedRootB;
+
+    public SpringSettleEngine() {
+        this(DEFAULT_STIFFNESS, DEFAULT_DAMPING_RATIO);
+    }
+
+    /**
+     * @param stiffness    Stiffness of the spring. Higher values settle faster
+     * @param dampingRatio 1 settles as fast as possible without oscillating, lower values bounce around the
+     *                     target and greater values approach it slower. Has to be greater than 0
+     */
+    public SpringSettleEngine(float stiffness, float dampingRatio) {
+
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("The stiffness of the spring has to be greater than 0");
+        }
+        if (dampingRatio <= 0) {
+            // An undamped spring oscillates forever and would never come to rest
+            throw new IllegalArgumentException("The damping ratio of the spring has to be greater than 0");
+        }
+
+        mNaturalFrequency = (float) Math.sqrt(stiffness);
+        mDampingRatio = dampingRatio;
+
+        if (dampingRatio < 1) {
+            mDampedFrequency = mNaturalFrequency * (float) Math.sqrt(1 - dampingRatio * dampingRatio);
+            mOverdampedRootA = mOverdampedRootB = 0;
+        } else if (dampingRatio > 1) {
+            final float root = (float) Math.sqrt(dampingRatio * dampingRatio - 1);
+            mOverdampedRootA = -mNaturalFrequency * (dampingRatio - root);
+            mOverdampedRootB = -mNaturalFrequency * (dampingRatio + root);
+            mDampedFrequency = 0;
+        } else {
+            mDampedFrequency = mOverdampedRootA = mOverdampedRootB = 0;
+        }
+    }
+
+    @Override
+    protected boolean onStep(float deltaTime) {
+
+        final float displacement = mPosition - mTarget;
+        final float velocity = mVelocity;
+        final float omega = mNaturalFrequency;
+
+        float newDisplacement;
+        float newVelocity;
+
+        if (mDampingRatio < 1) {
+
+            final float decay = (float) Math.exp(-mDampingRatio * omega * deltaTime);
+            final float cos = (float) Math.cos(mDampedFrequency * deltaTime);
+            final float sin = (float) Math.sin(mDampedFrequency * deltaTime);
+
+            newDisplacement = decay * (displacement * cos +
+                    (velocity + mDampingRatio * omega * displacement) / mDampedFrequency * sin);
+            newVelocity = decay * (velocity * cos -
+                    (omega * omega * displacement + mDampingRatio * omega * velocity) / mDampedFrequency * sin);
+
+        } else if (mDampingRatio > 1) {
+
+            final float rootA = mOverdampedRootA;
+            final float rootB = mOverdampedRootB;
+            final float coefficientB = (velocity - rootA * displacement) / (rootB - rootA);
+            final float coefficientA = displacement - coefficientB;
+            final float expA = (float) Math.exp(rootA * deltaTime);
+            final float expB = (float) Math.exp(rootB * deltaTime);
+
+            newDisplacement = coefficientA * expA + coefficientB * expB;
+            newVelocity = coefficientA * rootA * expA + coefficientB * rootB * expB;
+
+        } else {
+
+            final float decay = (float) Math.exp(-omega * deltaTime);
+            final float slope = velocity + omega * displacement;
+
+            newDisplacement = (displacement + slope * deltaTime) * decay;
+            newVelocity = (velocity - omega * slope * deltaTime) * decay;
+        }
+
+        mPosition = mTarget + newDisplacement;
+        mVelocity = newVelocity;
+
+        return Math.abs(newDisplacement) < REST_DISTANCE && Math.abs(newVelocity) < REST_VELOCITY;
+    }
+}
@@ -25,6 +25,7 @@ package com.wunderlist.slidinglayer.transformer;
 
 import android.view.View;
 
+import com.wunderlist.slidinglayer.LayerProperties;
 import com.wunderlist.slidinglayer.LayerTransformer;
 
 /**
@@ -46,9 +47,18 @@ public final class AlphaTransformer extends LayerTransformer {
 
     @Override
     public void transform(View layerView, float previewProgress, float layerProgress) {
+        layerView.setAlpha(alphaForProgress(previewProgress, layerProgress));
+    }
+
+    @Override
+    protected boolean writeProperties(LayerProperties properties, float previewProgress, float layerProgress,
+                                      int screenSide) {
+        properties.multiplyAlpha(alphaForProgress(previewProgress, layerProgress));
+        return true;
+    }
 
+    private float alphaForProgress(float previewProgress, float layerProgress) {
         final float progressRatioToAnimate = Math.max(previewProgress, layerProgress);
-        final float alpha = Math.max(0, Math.min(1, progressRatioToAnimate * mMultiplier));
-        layerView.setAlpha(alpha);
+        return Math.max(0, Math.min(1, progressRatioToAnimate * mMultiplier));
     }
 }
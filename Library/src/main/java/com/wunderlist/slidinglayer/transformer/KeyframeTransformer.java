@@ -0,0 +1,354 @@
+/*
+ * KeyframeTransformer.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.transformer;
+
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.view.View;
+
+import com.wunderlist.slidinglayer.LayerProperties;
+import com.wunderlist.slidinglayer.LayerTransformer;
+import com.wunderlist.slidinglayer.utils.Curve;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Transformer defined by keyframes in an XML resource rather than in code. Every property of the layer it animates
+ * follows a piecewise linear curve over the progress of the layer:
+ * <pre>
+ * &lt;layer-keyframes&gt;
+ *     &lt;property name="alpha" progress="layer"&gt;
+ *         &lt;keyframe position="0" value="0.4"/&gt;
+ *         &lt;keyframe position="1" value="1"/&gt;
+ *     &lt;/property&gt;
+ *     &lt;property name="rotationY"&gt;
+ *         &lt;keyframe position="0.7" value="0"/&gt;
+ *         &lt;keyframe position="0.9" value="-4.75"/&gt;
+ *         &lt;keyframe position="1" value="0"/&gt;
+ *     &lt;/property&gt;
+ * &lt;/layer-keyframes&gt;
+ * </pre>
+ * Properties are <code>alpha</code>, <code>scale</code>, <code>scaleX</code>, <code>scaleY</code>,
+ * <code>rotation</code>, <code>rotationX</code>, <code>rotationY</code>, <code>translationX</code> and
+ * <code>translationY</code>, translations being given in dp. Keyframes run over the <code>layer</code> progress, the
+ * <code>preview</code> progress, or by default the greatest of both, <code>max</code>. Before the first keyframe a
+ * property holds the first value, and after the last one, the last value. Translations do not combine with the
+ * translation mode of the layer, which moves it through the same properties.
+ * <p/>
+ * The resource is parsed once and the keyframes of every property compiled into a {@link Curve}, so all properties
+ * are evaluated in a single pass per frame without allocating.
+ */
+public final class KeyframeTransformer extends LayerTransformer {
+
+    private static final String TAG_ROOT = "layer-keyframes";
+    private static final String TAG_PROPERTY = "property";
+    private static final String TAG_KEYFRAME = "keyframe";
+
+    private static final String ATTR_NAME = "name";
+    private static final String ATTR_PROGRESS = "progress";
+    private static final String ATTR_POSITION = "position";
+    private static final String ATTR_VALUE = "value";
+
+    private static final int PROPERTY_ALPHA = 0;
+    private static final int PROPERTY_SCALE = 1;
+    private static final int PROPERTY_SCALE_X = 2;
+    private static final int PROPERTY_SCALE_Y = 3;
+    private static final int PROPERTY_ROTATION = 4;
+    private static final int PROPERTY_ROTATION_X = 5;
+    private static final int PROPERTY_ROTATION_Y = 6;
+    private static final int PROPERTY_TRANSLATION_X = 7;
+    private static final int PROPERTY_TRANSLATION_Y = 8;
+
+    private static final String[] PROPERTY_NAMES = new String[] {
+            "alpha", "scale", "scaleX", "scaleY", "rotation", "rotationX", "rotationY", "translationX", "translationY"
+    };
+
+    private static final int PROGRESS_MAX = 0;
+    private static final int PROGRESS_LAYER = 1;
+    private static final int PROGRESS_PREVIEW = 2;
+
+    private static final String[] PROGRESS_NAMES = new String[] { "max", "layer", "preview" };
+
+    private static final int INVALID_INDEX = -1;
+
+    // One entry per property: what it animates, over which progress and the curve its keyframes make up
+    private final int[] mTrackProperties;
+    private final int[] mTrackProgress;
+    private final Curve[] mTrackCurves;
+
+    /**
+     * @param resources Resources to load the keyframes from
+     * @param xmlRes    XML resource defining the keyframes
+     * @throws Resources.NotFoundException If the resource cannot be read
+     * @throws IllegalArgumentException    If the keyframes are not valid
+     */
+    public KeyframeTransformer(Resources resources, int xmlRes) {
+
+        final ArrayList<int[]> tracks = new ArrayList<int[]>();
+        final ArrayList<float[]> keyframes = new ArrayList<float[]>();
+
+        final XmlResourceParser parser = resources.getXml(xmlRes);
+        try {
+            parse(parser, tracks, keyframes);
+        } catch (XmlPullParserException e) {
+            throw notFound(xmlRes, e);
+        } catch (IOException e) {
+            throw notFound(xmlRes, e);
+        } finally {
+            parser.close();
+        }
+
+        final int trackCount = tracks.size();
+        mTrackProperties = new int[trackCount];
+        mTrackProgress = new int[trackCount];
+        mTrackCurves = new Curve[trackCount];
+
+        final float density = resources.getDisplayMetrics().density;
+
+        int offset = 0;
+        for (int i = 0; i < trackCount; i++) {
+
+            final int[] track = tracks.get(i);
+            final int property = track[0];
+            final int keyframeCount = track[2];
+            final boolean translation = property == PROPERTY_TRANSLATION_X || property == PROPERTY_TRANSLATION_Y;
+
+            final float[] positions = new float[keyframeCount];
+            final float[] values = new float[keyframeCount];
+            for (int k = 0; k < keyframeCount; k++) {
+                final float[] keyframe = keyframes.get(offset + k);
+                positions[k] = keyframe[0];
+                values[k] = translation ? keyframe[1] * density : keyframe[1];
+            }
+            offset += keyframeCount;
+
+            mTrackProperties[i] = property;
+            mTrackProgress[i] = track[1];
+            mTrackCurves[i] = new Curve(positions, values);
+        }
+    }
+
+    private static Resources.NotFoundException notFound(int xmlRes, Exception cause) {
+        final Resources.NotFoundException notFound = new Resources.NotFoundException(
+                "Can't load keyframes from resource ID #0x" + Integer.toHexString(xmlRes));
+        notFound.initCause(cause);
+        return notFound;
+    }
+
+    private static void parse(XmlResourceParser parser, ArrayList<int[]> tracks, ArrayList<float[]> keyframes)
+            throws XmlPullParserException, IOException {
+
+        int type;
+        int keyframesInTrack = 0;
+        float lastPosition = 0;
+
+        while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+
+            if (type == XmlPullParser.START_TAG) {
+
+                final String name = parser.getName();
+
+                if (TAG_ROOT.equals(name)) {
+                    continue;
+                }
+
+                if (TAG_PROPERTY.equals(name)) {
+                    final int property = indexOf(PROPERTY_NAMES, parser.getAttributeValue(null, ATTR_NAME),
+                            INVALID_INDEX);
+                    final int progress = indexOf(PROGRESS_NAMES, parser.getAttributeValue(null, ATTR_PROGRESS),
+                            PROGRESS_MAX);
+                    if (property == INVALID_INDEX || progress == INVALID_INDEX) {
+                        throw new IllegalArgumentException("Unknown property or progress at " +
+                                parser.getPositionDescription());
+                    }
+                    tracks.add(new int[] { property, progress, 0 });
+                    keyframesInTrack = 0;
+
+                } else if (TAG_KEYFRAME.equals(name)) {
+                    if (tracks.isEmpty() || parser.getDepth() < 3) {
+                        throw new IllegalArgumentException("Keyframes must be declared inside a property at " +
+                                parser.getPositionDescription());
+                    }
+
+                    final float position = parseFloat(parser, ATTR_POSITION);
+                    final float value = parseFloat(parser, ATTR_VALUE);
+                    if (keyframesInTrack > 0 && position < lastPosition) {
+                        throw new IllegalArgumentException("Keyframes must be in ascending order at " +
+                                parser.getPositionDescription());
+                    }
+
+                    keyframes.add(new float[] { position, value });
+                    tracks.get(tracks.size() - 1)[2] = ++keyframesInTrack;
+                    lastPosition = position;
+
+                } else {
+                    throw new IllegalArgumentException("Unknown tag " + name + " at " +
+                            parser.getPositionDescription());
+                }
+
+            } else if (type == XmlPullParser.END_TAG && TAG_PROPERTY.equals(parser.getName())) {
+                if (keyframesInTrack == 0) {
+                    throw new IllegalArgumentException("A property needs at least one keyframe at " +
+                            parser.getPositionDescription());
+                }
+            }
+        }
+    }
+
+    private static int indexOf(String[] names, String name, int defaultIndex) {
+
+        if (name == null) {
+            return defaultIndex;
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return INVALID_INDEX;
+    }
+
+    private static float parseFloat(XmlResourceParser parser, String attribute) {
+
+        final String value = parser.getAttributeValue(null, attribute);
+        if (value != null) {
+            try {
+                final float number = Float.parseFloat(value);
+                if (!Float.isNaN(number)) {
+                    return number;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        throw new IllegalArgumentException("Missing or invalid " + attribute + " at " +
+                parser.getPositionDescription());
+    }
+
+    @Override
+    public void transform(View layerView, float previewProgress, float layerProgress) {
+
+        final int trackCount = mTrackProperties.length;
+        for (int i = 0; i < trackCount; i++) {
+
+            final float value = evaluateTrack(i, previewProgress, layerProgress);
+
+            switch (mTrackProperties[i]) {
+            case PROPERTY_ALPHA:
+                layerView.setAlpha(value);
+                break;
+            case PROPERTY_SCALE:
+                layerView.setScaleX(value);
+                layerView.setScaleY(value);
+                break;
+            case PROPERTY_SCALE_X:
+                layerView.setScaleX(value);
+                break;
+            case PROPERTY_SCALE_Y:
+                layerView.setScaleY(value);
+                break;
+            case PROPERTY_ROTATION:
+                layerView.setRotation(value);
+                break;
+            case PROPERTY_ROTATION_X:
+                layerView.setRotationX(value);
+                break;
+            case PROPERTY_ROTATION_Y:
+                layerView.setRotationY(value);
+                break;
+            case PROPERTY_TRANSLATION_X:
+                layerView.setTranslationX(value);
+                break;
+            case PROPERTY_TRANSLATION_Y:
+                layerView.setTranslationY(value);
+                break;
+            }
+        }
+    }
+
+    @Override
+    protected boolean writeProperties(LayerProperties properties, float previewProgress, float layerProgress,
+                                      int screenSide) {
+
+        final int trackCount = mTrackProperties.length;
+        for (int i = 0; i < trackCount; i++) {
+
+            final float value = evaluateTrack(i, previewProgress, layerProgress);
+
+            switch (mTrackProperties[i]) {
+            case PROPERTY_ALPHA:
+                properties.multiplyAlpha(value);
+                break;
+            case PROPERTY_SCALE:
+                properties.multiplyScale(value, value);
+                break;
+            case PROPERTY_SCALE_X:
+                properties.write(LayerProperties.SCALE_X, value);
+                break;
+            case PROPERTY_SCALE_Y:
+                properties.write(LayerProperties.SCALE_Y, value);
+                break;
+            case PROPERTY_ROTATION:
+                properties.addRotation(value);
+                break;
+            case PROPERTY_ROTATION_X:
+                properties.addRotationX(value);
+                break;
+            case PROPERTY_ROTATION_Y:
+                properties.addRotationY(value);
+                break;
+            case PROPERTY_TRANSLATION_X:
+                properties.write(LayerProperties.TRANSLATION_X, value);
+                break;
+            case PROPERTY_TRANSLATION_Y:
+                properties.write(LayerProperties.TRANSLATION_Y, value);
+                break;
+            }
+        }
+        return true;
+    }
+
+    private float evaluateTrack(int track, float previewProgress, float layerProgress) {
+
+        final float progress;
+        switch (mTrackProgress[track]) {
+        case PROGRESS_LAYER:
+            progress = layerProgress;
+            break;
+        case PROGRESS_PREVIEW:
+            progress = previewProgress;
+            break;
+        default:
+            progress = Math.max(previewProgress, layerProgress);
+            break;
+        }
+
+        return mTrackCurves[track].evaluate(progress);
+    }
+}
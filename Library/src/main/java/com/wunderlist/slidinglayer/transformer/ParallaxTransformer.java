@@ -0,0 +1,82 @@
+/*
+ * ParallaxTransformer.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.transformer;
+
+import android.view.View;
+
+import com.wunderlist.slidinglayer.LayerChildren;
+import com.wunderlist.slidinglayer.LayerTransformer;
+import com.wunderlist.slidinglayer.SlidingLayer;
+
+/**
+ * Moves tagged descendants of the layer at their own pace while it slides. A descendant with a factor of 0 moves
+ * along with the layer, while one with a factor of 0.5 trails behind by half of the distance the layer still has
+ * to go, and so on. A delay in [0 - 1) holds the descendant back until the layer has covered that fraction of its
+ * way, which staggers the entry of several descendants.
+ * <p/>
+ * Descendants are moved through their translation, which should not be set by anything else.
+ *
+ * @see LayerChildren
+ */
+public final class ParallaxTransformer extends LayerTransformer {
+
+    private int mLayerSize;
+    private int mDirectionX;
+    private int mDirectionY;
+
+    @Override
+    protected void onMeasure(View layerView, int screenSide) {
+
+        // Descendants trail towards the side the layer hides on
+        mDirectionX = screenSide == SlidingLayer.STICK_TO_RIGHT ? 1 : screenSide == SlidingLayer.STICK_TO_LEFT ? -1 : 0;
+        mDirectionY = screenSide == SlidingLayer.STICK_TO_BOTTOM ? 1 : screenSide == SlidingLayer.STICK_TO_TOP ? -1 : 0;
+
+        mLayerSize = mDirectionX != 0 ? layerView.getMeasuredWidth() : layerView.getMeasuredHeight();
+    }
+
+    @Override
+    public void transform(View layerView, float previewProgress, float layerProgress) {
+    }
+
+    @Override
+    protected void transformChildren(LayerChildren children, float previewProgress, float layerProgress,
+                                     int screenSide) {
+
+        final float progress = Math.max(previewProgress, layerProgress);
+
+        final int count = children.getCount();
+        for (int i = 0; i < count; i++) {
+
+            final float delay = children.getDelay(i);
+            final float childProgress = delay > 0 && delay < 1 ?
+                    Math.max(0, Math.min(1, (progress - delay) / (1 - delay))) :
+                    progress;
+
+            final float offset = children.getFactor(i) * (1 - childProgress) * mLayerSize;
+            final View child = children.getChildAt(i);
+            child.setTranslationX(mDirectionX * offset);
+            child.setTranslationY(mDirectionY * offset);
+        }
+    }
+}
@@ -25,6 +25,7 @@ package com.wunderlist.slidinglayer.transformer;
 
 import android.view.View;
 
+import com.wunderlist.slidinglayer.LayerProperties;
 import com.wunderlist.slidinglayer.LayerTransformer;
 import com.wunderlist.slidinglayer.SlidingLayer;
 
@@ -49,9 +50,8 @@ public final class RotationTransformer extends LayerTransformer {
     @Override
     protected void onMeasure(View layerView, int screenSide) {
 
-        final int[] pivotPosition = pivotPositionForScreenSide(layerView, screenSide);
-        layerView.setPivotX(pivotPosition[0]);
-        layerView.setPivotY(pivotPosition[1]);
+        layerView.setPivotX(pivotXForScreenSide(layerView, screenSide));
+        layerView.setPivotY(pivotYForScreenSide(layerView, screenSide));
 
         mAngle = mMaxAngle *
                 (screenSide == SlidingLayer.STICK_TO_LEFT || screenSide == SlidingLayer.STICK_TO_TOP ? -1 : 1);
@@ -63,29 +63,36 @@ public final class RotationTransformer extends LayerTransformer {
 
     @Override
     protected void internalTransform(View layerView, float previewProgress, float layerProgress, int screenSide) {
-        
+        layerView.setRotation(rotationForProgress(previewProgress, layerProgress));
+    }
+
+    @Override
+    protected boolean writeProperties(LayerProperties properties, float previewProgress, float layerProgress,
+                                      int screenSide) {
+        properties.addRotation(rotationForProgress(previewProgress, layerProgress));
+        return true;
+    }
+
+    private float rotationForProgress(float previewProgress, float layerProgress) {
         final float progressRatioToAnimate = Math.max(previewProgress, layerProgress);
-        layerView.setRotation(mAngle * (1 - progressRatioToAnimate));
+        return mAngle * (1 - progressRatioToAnimate);
     }
 
-    private int[] pivotPositionForScreenSide(View layerView, int screenSide) {
+    private int pivotXForScreenSide(View layerView, int screenSide) {
+        return screenSide == SlidingLayer.STICK_TO_RIGHT ? layerView.getMeasuredWidth() : 0;
+    }
+
+    private int pivotYForScreenSide(View layerView, int screenSide) {
 
         switch (screenSide) {
 
         case SlidingLayer.STICK_TO_LEFT:
-            return new int[] { 0, layerView.getMeasuredHeight() };
-
-        case SlidingLayer.STICK_TO_TOP:
-            return new int[] { 0, 0 };
-
         case SlidingLayer.STICK_TO_RIGHT:
-            return new int[] { layerView.getMeasuredWidth(), layerView.getMeasuredHeight() };
-
         case SlidingLayer.STICK_TO_BOTTOM:
-            return new int[] { 0, layerView.getMeasuredHeight() };
+            return layerView.getMeasuredHeight();
 
         default:
-            return new int[] { 0, 0 };
+            return 0;
         }
     }
 }
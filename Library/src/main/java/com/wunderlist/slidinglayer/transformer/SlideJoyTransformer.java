@@ -25,33 +25,40 @@ package com.wunderlist.slidinglayer.transformer;
 
 import android.view.View;
 
+import com.wunderlist.slidinglayer.LayerProperties;
 import com.wunderlist.slidinglayer.LayerTransformer;
 import com.wunderlist.slidinglayer.SlidingLayer;
-import com.wunderlist.slidinglayer.utils.Transitions;
+import com.wunderlist.slidinglayer.utils.Curve;
 
 /**
  * Created by joseluisugia on 16/03/15.
  */
 public final class SlideJoyTransformer extends LayerTransformer {
 
-    private final float[] mCuePoints = new float[] { 0.7f, 0.9f, 1 };
+    private static final Curve SCALE_CURVE = new Curve(new float[] { 0.9f, 1 }, new float[] { 0.9f, 1 });
+    private static final float[] ROTATION_CUE_POINTS = new float[] { 0.7f, 0.9f, 1 };
+    private static final float ROTATION_ANGLE = -4.75f;
 
-    private float[] mRotationXValues;
-    private float[] mRotationYValues;
+    // Rotation curves depend on the screen side, they are only compiled again when it changes
+    private Curve mRotationXCurve;
+    private Curve mRotationYCurve;
+    private int mRotationScreenSide;
 
     @Override
     protected void onMeasure(View layerView, int screenSide) {
 
         // Rotation
-        float[] rotationXY = rotationValueForScreenSide(-4.75f, screenSide);
-
-        mRotationXValues = new float[] { 0, rotationXY[0], 0 };
-        mRotationYValues = new float[] { 0, rotationXY[1], 0 };
+        if (mRotationXCurve == null || mRotationScreenSide != screenSide) {
+            mRotationScreenSide = screenSide;
+            mRotationXCurve = new Curve(ROTATION_CUE_POINTS,
+                    new float[] { 0, rotationXForScreenSide(ROTATION_ANGLE, screenSide), 0 });
+            mRotationYCurve = new Curve(ROTATION_CUE_POINTS,
+                    new float[] { 0, rotationYForScreenSide(ROTATION_ANGLE, screenSide), 0 });
+        }
 
         // Pivot
-        int[] pivotPosition = pivotPositionForScreenSide(layerView, screenSide);
-        layerView.setPivotX(pivotPosition[0]);
-        layerView.setPivotY(pivotPosition[1]);
+        layerView.setPivotX(pivotXForScreenSide(layerView, screenSide));
+        layerView.setPivotY(pivotYForScreenSide(layerView, screenSide));
     }
 
     @Override
@@ -64,60 +71,92 @@ public final class SlideJoyTransformer extends LayerTransformer {
         float progressRatioToAnimate = Math.max(previewProgress, layerProgress);
 
         // Scale
-        float scaleValue = Transitions.intermediateValueForCuePoints(progressRatioToAnimate,
-                new float[] { 0.9f, 1 });
+        float scaleValue = SCALE_CURVE.evaluate(progressRatioToAnimate);
         layerView.setScaleX(scaleValue);
         layerView.setScaleY(scaleValue);
 
         // Rotation
         float rotationX, rotationY;
 
-        rotationX = Transitions.intermediateValueForRange(progressRatioToAnimate, mCuePoints, mRotationXValues);
+        rotationX = mRotationXCurve.evaluate(progressRatioToAnimate);
         layerView.setRotationX(rotationX);
 
-        rotationY = Transitions.intermediateValueForRange(progressRatioToAnimate, mCuePoints, mRotationYValues);
+        rotationY = mRotationYCurve.evaluate(progressRatioToAnimate);
         layerView.setRotationY(rotationY);
     }
 
-    private float[] rotationValueForScreenSide(float value, int screenSide) {
+    @Override
+    protected boolean writeProperties(LayerProperties properties, float previewProgress, float layerProgress,
+                                      int screenSide) {
 
-        switch (screenSide) {
+        float progressRatioToAnimate = Math.max(previewProgress, layerProgress);
 
-        case SlidingLayer.STICK_TO_LEFT:
-            return new float[] { 0, value };
+        float scaleValue = SCALE_CURVE.evaluate(progressRatioToAnimate);
+        properties.multiplyScale(scaleValue, scaleValue);
+        properties.addRotationX(mRotationXCurve.evaluate(progressRatioToAnimate));
+        properties.addRotationY(mRotationYCurve.evaluate(progressRatioToAnimate));
+        return true;
+    }
 
-        case SlidingLayer.STICK_TO_TOP:
-            return new float[] { -value, 0 };
+    private float rotationXForScreenSide(float value, int screenSide) {
 
-        case SlidingLayer.STICK_TO_RIGHT:
-            return new float[] { 0, -value };
+        switch (screenSide) {
+
+        case SlidingLayer.STICK_TO_TOP:
+            return -value;
 
         case SlidingLayer.STICK_TO_BOTTOM:
-            return new float[] { value, 0 };
+            return value;
 
         default:
-            return new float[] { 0, 0 };
+            return 0;
         }
     }
 
-    private int[] pivotPositionForScreenSide(View layerView, int screenSide) {
+    private float rotationYForScreenSide(float value, int screenSide) {
 
         switch (screenSide) {
 
         case SlidingLayer.STICK_TO_LEFT:
-            return new int[] { 0, layerView.getMeasuredHeight() / 2 };
+            return value;
+
+        case SlidingLayer.STICK_TO_RIGHT:
+            return -value;
+
+        default:
+            return 0;
+        }
+    }
+
+    private int pivotXForScreenSide(View layerView, int screenSide) {
+
+        switch (screenSide) {
 
         case SlidingLayer.STICK_TO_TOP:
-            return new int[] { layerView.getMeasuredWidth() / 2, 0 };
+        case SlidingLayer.STICK_TO_BOTTOM:
+            return layerView.getMeasuredWidth() / 2;
+
+        case SlidingLayer.STICK_TO_RIGHT:
+            return layerView.getMeasuredWidth();
 
+        default:
+            return 0;
+        }
+    }
+
+    private int pivotYForScreenSide(View layerView, int screenSide) {
+
+        switch (screenSide) {
+
+        case SlidingLayer.STICK_TO_LEFT:
         case SlidingLayer.STICK_TO_RIGHT:
-            return new int[] { layerView.getMeasuredWidth(), layerView.getMeasuredHeight() / 2 };
+            return layerView.getMeasuredHeight() / 2;
 
         case SlidingLayer.STICK_TO_BOTTOM:
-            return new int[] { layerView.getMeasuredWidth() / 2, layerView.getMeasuredHeight() };
+            return layerView.getMeasuredHeight();
 
         default:
-            return new int[] { 0, 0 };
+            return 0;
         }
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * BitmapPool.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps released ARGB_8888 bitmaps around to hand them out again for the same size, so that views taking the same
+ * snapshots over and over do not allocate a bitmap each time. Pooled bitmaps are kept within a budget of memory,
+ * the least recently released ones are recycled first when it is exceeded.
+ * <p/>
+ * Pools are meant to hold a handful of bitmaps, so they are looked up linearly.
+ */
+public final class BitmapPool {
+
+    /**
+     * Pooled bitmaps, from the least to the most recently released
+     */
+    private final ArrayList<Bitmap> mBitmaps = new ArrayList<Bitmap>();
+    private int mMaxSize;
+    private int mSize;
+
+    /**
+     * @param maxSize Memory the pooled bitmaps can take, in bytes
+     */
+    public BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Take a cleared bitmap of the given size out of the pool, or create it if the pool has none.
+     */
+    public synchronized Bitmap get(int width, int height) {
+
+        for (int i = mBitmaps.size() - 1; i >= 0; i--) {
+            final Bitmap bitmap = mBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                mBitmaps.remove(i);
+                mSize -= sizeOf(bitmap);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Give a bitmap back to the pool. The caller must not use it anymore.
+     */
+    public synchronized void put(Bitmap bitmap) {
+
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+
+        final int size = sizeOf(bitmap);
+        if (size > mMaxSize || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap.recycle();
+            return;
+        }
+
+        mBitmaps.add(bitmap);
+        mSize += size;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Sets the memory the pooled bitmaps can take, recycling the least recently released ones beyond it.
+     *
+     * @param maxSize Size in bytes
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return Memory taken by the pooled bitmaps, in bytes
+     */
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Recycle every pooled bitmap.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mBitmaps.isEmpty()) {
+            final Bitmap bitmap = mBitmaps.remove(0);
+            mSize -= sizeOf(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
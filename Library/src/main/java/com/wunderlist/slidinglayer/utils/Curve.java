@@ -0,0 +1,201 @@
+/*
+ * Curve.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.utils;
+
+/**
+ * Piecewise linear curve through a set of cue points and the values they map to. Before the first cue point the
+ * curve holds the first value, and after the last one, the last value.
+ * <p/>
+ * The curve is compiled once: the cue points are validated and the slope and intercept of every segment are
+ * computed up front. Intercepts are taken at the start of each segment rather than at 0, which keeps the
+ * precision of segments far from the origin. Segments are then found by binary search, or by direct indexing when
+ * the cue points are evenly spaced, and evaluating the curve never allocates.
+ */
+public final class Curve {
+
+    // Relative tolerance for cue points to be considered evenly spaced
+    private static final float UNIFORM_TOLERANCE = 1e-4f;
+
+    private final float[] mCuePoints;
+    private final float[] mSlopes;
+    private final float[] mIntercepts;
+    private final float mFirstValue;
+    private final float mLastValue;
+
+    /**
+     * Inverse of the spacing of the cue points when they are evenly spaced, 0 otherwise
+     */
+    private final float mUniformScale;
+
+    /**
+     * @param cuePoints Positions of the cue points, in ascending order
+     * @param values    Values of the curve at each cue point
+     * @throws IllegalArgumentException If the arrays are empty, of different sizes, contain NaNs or the cue points
+     *                                  are not in ascending order
+     */
+    public Curve(float[] cuePoints, float[] values) {
+
+        validate(cuePoints, values);
+
+        final int length = cuePoints.length;
+        final int segments = Math.max(0, length - 1);
+
+        mCuePoints = cuePoints.clone();
+        mSlopes = new float[segments];
+        mIntercepts = new float[segments];
+        mFirstValue = values[0];
+        mLastValue = values[length - 1];
+
+        for (int i = 0; i < segments; i++) {
+
+            final float width = cuePoints[i + 1] - cuePoints[i];
+            if (width > 0) {
+                mSlopes[i] = (values[i + 1] - values[i]) / width;
+                mIntercepts[i] = values[i];
+            } else {
+                // Steps are never evaluated inside, keep the value reached at their end
+                mIntercepts[i] = values[i + 1];
+            }
+        }
+
+        mUniformScale = uniformScale(cuePoints);
+    }
+
+    /**
+     * Evaluates the curve.
+     *
+     * @param position Position to evaluate the curve at
+     * @return The value of the curve at the given position
+     */
+    public float evaluate(float position) {
+
+        final float[] cuePoints = mCuePoints;
+        final int last = cuePoints.length - 1;
+
+        if (position <= cuePoints[0]) {
+            return mFirstValue;
+        } else if (position > cuePoints[last]) {
+            return mLastValue;
+        }
+
+        final int segment;
+        if (mUniformScale > 0) {
+            segment = Math.min(last - 1, (int) ((position - cuePoints[0]) * mUniformScale));
+        } else {
+            segment = findSegment(position, cuePoints) - 1;
+        }
+
+        return mIntercepts[segment] + mSlopes[segment] * (position - cuePoints[segment]);
+    }
+
+    /**
+     * Evaluates a curve given by its cue points and values without compiling it. Meant for curves that change all
+     * the time, the arrays are not validated.
+     *
+     * @see #Curve(float[], float[])
+     * @see #evaluate(float)
+     */
+    public static float evaluate(float position, float[] cuePoints, float[] values) {
+
+        final int last = cuePoints.length - 1;
+
+        if (position <= cuePoints[0]) {
+            return values[0];
+        } else if (position > cuePoints[last]) {
+            return values[last];
+        }
+
+        final int i = findSegment(position, cuePoints);
+        final float previousCuePoint = cuePoints[i - 1];
+        final float previousValue = values[i - 1];
+        final float rangeRatio = (position - previousCuePoint) / (cuePoints[i] - previousCuePoint);
+
+        return previousValue + ((values[i] - previousValue) * rangeRatio);
+    }
+
+    /**
+     * @return The index of the first cue point the position is not after, for positions in
+     * (cuePoints[0], cuePoints[last]]
+     */
+    private static int findSegment(float position, float[] cuePoints) {
+
+        int low = 1;
+        int high = cuePoints.length - 1;
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (position <= cuePoints[middle]) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private static void validate(float[] cuePoints, float[] values) {
+
+        if (cuePoints.length != values.length) {
+            throw new IllegalArgumentException("Range and values arrays must be of the same size");
+        }
+
+        if (cuePoints.length == 0) {
+            throw new IllegalArgumentException("At least one cue point is needed");
+        }
+
+        for (int i = 0; i < cuePoints.length; i++) {
+
+            if (Float.isNaN(cuePoints[i]) || Float.isNaN(values[i])) {
+                throw new IllegalArgumentException("Cue points and values must be numbers");
+            }
+
+            if (i > 0 && cuePoints[i] < cuePoints[i - 1]) {
+                throw new IllegalArgumentException("Cue points must be in ascending order");
+            }
+        }
+    }
+
+    private static float uniformScale(float[] cuePoints) {
+
+        final int segments = cuePoints.length - 1;
+        if (segments < 1) {
+            return 0;
+        }
+
+        final float step = (cuePoints[segments] - cuePoints[0]) / segments;
+        if (step <= 0) {
+            return 0;
+        }
+
+        for (int i = 1; i < segments; i++) {
+            final float expected = cuePoints[0] + step * i;
+            if (Math.abs(cuePoints[i] - expected) > step * UNIFORM_TOLERANCE) {
+                return 0;
+            }
+        }
+
+        return 1 / step;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * FrameClock.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.utils;
+
+import android.content.Context;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+import android.view.WindowManager;
+
+/**
+ * Delivers one callback per display frame, stamped with the time of the frame. From Jelly Bean on, frames come
+ * from the {@link Choreographer} and carry its vsync timestamp, so anything animated with them advances by the
+ * real time between frames, catching up after dropped ones. Earlier releases fall back to animation runnables
+ * stamped with the current time.
+ */
+public final class FrameClock {
+
+    public static final float DEFAULT_REFRESH_RATE = 60f;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * Interface definition for a callback to be invoked on every frame requested to the clock.
+     */
+    public interface Callback {
+
+        /**
+         * @param frameTimeNanos The time at which the frame started rendering, in the
+         *                       {@link System#nanoTime()} time base
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    private final View mView;
+    private final Callback mCallback;
+
+    private final ChoreographerFrameCallback mChoreographerCallback;
+    private final Runnable mAnimationRunnable;
+
+    private boolean mFramePending;
+    private long mFrameIntervalNanos = (long) (NANOS_PER_SECOND / DEFAULT_REFRESH_RATE);
+
+    public FrameClock(View view, Callback callback) {
+
+        mView = view;
+        mCallback = callback;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mChoreographerCallback = new ChoreographerFrameCallback();
+            mAnimationRunnable = null;
+        } else {
+            mChoreographerCallback = null;
+            mAnimationRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    dispatchFrame(System.nanoTime());
+                }
+            };
+        }
+    }
+
+    /**
+     * Request a callback for the next frame. Requesting it again before it has been delivered has no effect.
+     */
+    public void postFrameCallback() {
+
+        if (mFramePending) {
+            return;
+        }
+
+        mFramePending = true;
+        if (mChoreographerCallback != null) {
+            Choreographer.getInstance().postFrameCallback(mChoreographerCallback);
+        } else {
+            ViewCompat.postOnAnimation(mView, mAnimationRunnable);
+        }
+    }
+
+    /**
+     * Remove the pending frame callback, if any.
+     */
+    public void removeFrameCallback() {
+
+        if (!mFramePending) {
+            return;
+        }
+
+        mFramePending = false;
+        if (mChoreographerCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(mChoreographerCallback);
+        } else {
+            mView.removeCallbacks(mAnimationRunnable);
+        }
+    }
+
+    /**
+     * Read the refresh rate of the display the view is shown on. Call it whenever the display might have changed,
+     * it is not meant to be called on every frame.
+     */
+    public void updateRefreshRate() {
+
+        final Display display;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            display = mView.getDisplay();
+        } else {
+            final WindowManager windowManager = (WindowManager) mView.getContext()
+                    .getSystemService(Context.WINDOW_SERVICE);
+            display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+        }
+
+        float refreshRate = display != null ? display.getRefreshRate() : DEFAULT_REFRESH_RATE;
+        if (refreshRate < 1) {
+            refreshRate = DEFAULT_REFRESH_RATE;
+        }
+        mFrameIntervalNanos = (long) (NANOS_PER_SECOND / refreshRate);
+    }
+
+    /**
+     * @return The time between two frames of the display, in nanoseconds
+     */
+    public long getFrameIntervalNanos() {
+        return mFrameIntervalNanos;
+    }
+
+    /**
+     * Round a duration to a whole number of frames, so that an animation of that length ends right on a frame.
+     *
+     * @param durationMillis Duration in milliseconds
+     * @return The closest duration, never shorter than a frame, that lasts a whole number of frames, in nanoseconds
+     */
+    public long roundToFrames(int durationMillis) {
+        final long frames = Math.max(1, Math.round(durationMillis * 1000000d / mFrameIntervalNanos));
+        return frames * mFrameIntervalNanos;
+    }
+
+    private void dispatchFrame(long frameTimeNanos) {
+        mFramePending = false;
+        mCallback.doFrame(frameTimeNanos);
+    }
+
+    private final class ChoreographerFrameCallback implements Choreographer.FrameCallback {
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            dispatchFrame(frameTimeNanos);
+        }
+    }
+}
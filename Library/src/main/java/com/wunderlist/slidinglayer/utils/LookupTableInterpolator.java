@@ -0,0 +1,78 @@
+/*
+ * LookupTableInterpolator.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.utils;
+
+import android.view.animation.Interpolator;
+
+/**
+ * Interpolator that samples another one into a table of evenly spaced values when created, and linearly
+ * interpolates between those samples afterwards. Evaluating it costs the same regardless of how expensive the
+ * source interpolator is, and it never allocates.
+ */
+public final class LookupTableInterpolator implements Interpolator {
+
+    public static final int DEFAULT_SAMPLE_COUNT = 201;
+
+    private final float[] mValues;
+    private final int mLastIndex;
+
+    public LookupTableInterpolator(Interpolator source) {
+        this(source, DEFAULT_SAMPLE_COUNT);
+    }
+
+    /**
+     * @param source      Interpolator to sample
+     * @param sampleCount Number of samples taken from the source, both ends included
+     */
+    public LookupTableInterpolator(Interpolator source, int sampleCount) {
+
+        if (sampleCount < 2) {
+            throw new IllegalArgumentException("At least two samples are needed to build the table");
+        }
+
+        mValues = new float[sampleCount];
+        mLastIndex = sampleCount - 1;
+
+        for (int i = 0; i < sampleCount; i++) {
+            mValues[i] = source.getInterpolation((float) i / mLastIndex);
+        }
+    }
+
+    @Override
+    public float getInterpolation(float input) {
+
+        if (input <= 0) {
+            return mValues[0];
+        } else if (input >= 1) {
+            return mValues[mLastIndex];
+        }
+
+        final float position = input * mLastIndex;
+        final int index = (int) position;
+        final float fraction = position - index;
+        final float value = mValues[index];
+
+        return value + (mValues[index + 1] - value) * fraction;
+    }
+}
@@ -25,12 +25,15 @@ package com.wunderlist.slidinglayer.utils;
 
 /**
  * Created by joseluisugia on 17/03/15.
+ * <p/>
+ * Curves evaluated over and over with the same cue points are better compiled into a {@link Curve}.
  */
 public class Transitions {
 
+    private static final float[] UNIT_RANGE = new float[] { 0, 1 };
 
     public static float intermediateValueForRange(float position, float[] values) {
-        return intermediateValueForRange(position, new float[] { 0, 1 }, values);
+        return intermediateValueForRange(position, UNIT_RANGE, values);
     }
 
     public static float intermediateValueForCuePoints(float position, float[] range) {
@@ -43,29 +46,6 @@ public class Transitions {
             throw new IllegalArgumentException("Range and values arrays must be of the same size");
         }
 
-        int length = cuePoints.length;
-
-        if (position <= cuePoints[0]) {
-            return values[0];
-        } else {
-
-            float cuePoint, previousCuePoint, value, previousValue;
-            float rangeRatio;
-
-            for (int i = 1; i < length; i++) {
-
-                cuePoint = cuePoints[i];
-
-                if (position <= cuePoint) {
-                    previousCuePoint = cuePoints[i - 1];
-                    value = values[i];
-                    previousValue = values[i - 1];
-                    rangeRatio = (position - previousCuePoint) / (cuePoint - previousCuePoint);
-                    return previousValue + ((value - previousValue) * rangeRatio);
-                }
-            }
-
-            return values[length - 1];
-        }
+        return Curve.evaluate(position, cuePoints, values);
     }
 }
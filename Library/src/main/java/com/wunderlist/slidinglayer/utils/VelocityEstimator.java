@@ -0,0 +1,229 @@
+/*
+ * VelocityEstimator.java
+ *
+ * Copyright (C) 2015 6 Wunderkinder GmbH.
+ *
+ * @author      Jose L Ugia - @Jl_Ugia
+ * @author      Antonio Consuegra - @aconsuegra
+ * @author      Cesar Valiente - @CesarValiente
+ * @version     1.2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.wunderlist.slidinglayer.utils;
+
+import android.view.MotionEvent;
+
+/**
+ * Estimates the velocity of a single pointer from the latest positions it went through, historical ones included.
+ * Samples are kept in a ring buffer allocated once, so the same instance can be reused for every gesture.
+ * <p/>
+ * The velocity is the slope, at the latest sample, of a quadratic least squares fit of the samples taken within
+ * {@link #HORIZON_MILLIS}. With fewer than three samples the fit degrades to a line.
+ */
+public final class VelocityEstimator {
+
+    /**
+     * Maximum number of samples kept
+     */
+    public static final int SAMPLE_COUNT = 20;
+
+    /**
+     * Samples older than this, relative to the latest one, are left out of the estimate
+     */
+    public static final long HORIZON_MILLIS = 100;
+
+    private static final int INVALID_POINTER = -1;
+
+    private final long[] mTimes = new long[SAMPLE_COUNT];
+    private final float[] mX = new float[SAMPLE_COUNT];
+    private final float[] mY = new float[SAMPLE_COUNT];
+
+    private int mHead = -1;
+    private int mCount;
+    private int mPointerId = INVALID_POINTER;
+
+    private float mXVelocity;
+    private float mYVelocity;
+
+    /**
+     * Forget every sample added so far.
+     */
+    public void clear() {
+        mHead = -1;
+        mCount = 0;
+        mPointerId = INVALID_POINTER;
+        mXVelocity = 0;
+        mYVelocity = 0;
+    }
+
+    /**
+     * Add the positions of a pointer carried by an event, historical ones included. A down event starts a new
+     * gesture with its first pointer, and so does a change of pointer. Up events are left out, like the platform
+     * velocity tracker does.
+     *
+     * @param ev        Event to read the positions from
+     * @param pointerId Pointer to follow
+     * @param offsetX   Offset added to every horizontal position
+     * @param offsetY   Offset added to every vertical position
+     */
+    public void addMovement(MotionEvent ev, int pointerId, float offsetX, float offsetY) {
+
+        final int action = ev.getAction() & MotionEvent.ACTION_MASK;
+        if (action == MotionEvent.ACTION_DOWN) {
+            clear();
+            pointerId = ev.getPointerId(0);
+        } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP) {
+            // Lifted pointers are reported where they last moved, a little later, which would only drag the fit
+            // towards no velocity
+            return;
+        }
+
+        final int pointerIndex = ev.findPointerIndex(pointerId);
+        if (pointerIndex < 0) {
+            return;
+        }
+
+        if (pointerId != mPointerId) {
+            clear();
+            mPointerId = pointerId;
+        }
+
+        final int historySize = ev.getHistorySize();
+        for (int h = 0; h < historySize; h++) {
+            addSample(ev.getHistoricalEventTime(h),
+                    ev.getHistoricalX(pointerIndex, h) + offsetX,
+                    ev.getHistoricalY(pointerIndex, h) + offsetY);
+        }
+        addSample(ev.getEventTime(), ev.getX(pointerIndex) + offsetX, ev.getY(pointerIndex) + offsetY);
+    }
+
+    private void addSample(long time, float x, float y) {
+
+        if (mCount > 0 && time < mTimes[mHead]) {
+            // Out of order, it would only skew the fit
+            return;
+        }
+
+        mHead = (mHead + 1) % SAMPLE_COUNT;
+        mTimes[mHead] = time;
+        mX[mHead] = x;
+        mY[mHead] = y;
+        if (mCount < SAMPLE_COUNT) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Compute the current velocity from the samples added so far. Read it with {@link #getXVelocity()} and
+     * {@link #getYVelocity()}.
+     *
+     * @param units       The units to compute the velocity in: 1 for pixels per millisecond, 1000 for pixels
+     *                    per second
+     * @param maxVelocity Maximum absolute velocity, in the given units
+     */
+    public void computeVelocity(int units, float maxVelocity) {
+
+        mXVelocity = 0;
+        mYVelocity = 0;
+        if (mCount < 2) {
+            return;
+        }
+
+        final long newest = mTimes[mHead];
+
+        // Sums of the powers of time and of the positions weighted by them, time being relative to the newest sample
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double sx = 0, stx = 0, st2x = 0;
+        double sy = 0, sty = 0, st2y = 0;
+
+        final float originX = mX[mHead];
+        final float originY = mY[mHead];
+
+        int index = mHead;
+        for (int i = 0; i < mCount; i++) {
+
+            final long age = newest - mTimes[index];
+            if (age > HORIZON_MILLIS) {
+                break;
+            }
+
+            final double t = -age;
+            final double t2 = t * t;
+            final double x = mX[index] - originX;
+            final double y = mY[index] - originY;
+
+            s0 += 1;
+            s1 += t;
+            s2 += t2;
+            s3 += t2 * t;
+            s4 += t2 * t2;
+            sx += x;
+            stx += t * x;
+            st2x += t2 * x;
+            sy += y;
+            sty += t * y;
+            st2y += t2 * y;
+
+            index = index == 0 ? SAMPLE_COUNT - 1 : index - 1;
+        }
+
+        if (s0 < 2) {
+            return;
+        }
+
+        double vx = Double.NaN;
+        double vy = Double.NaN;
+
+        if (s0 >= 3) {
+            // Quadratic fit: solve the normal equations for the linear coefficient with Cramer's rule
+            final double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2);
+            if (Math.abs(det) > 1e-9) {
+                vx = (s0 * (stx * s4 - s3 * st2x) - sx * (s1 * s4 - s3 * s2) + s2 * (s1 * st2x - stx * s2)) / det;
+                vy = (s0 * (sty * s4 - s3 * st2y) - sy * (s1 * s4 - s3 * s2) + s2 * (s1 * st2y - sty * s2)) / det;
+            }
+        }
+
+        if (Double.isNaN(vx)) {
+            // Linear fit
+            final double det = s0 * s2 - s1 * s1;
+            if (Math.abs(det) < 1e-9) {
+                return;
+            }
+            vx = (s0 * stx - s1 * sx) / det;
+            vy = (s0 * sty - s1 * sy) / det;
+        }
+
+        mXVelocity = clamp((float) (vx * units), maxVelocity);
+        mYVelocity = clamp((float) (vy * units), maxVelocity);
+    }
+
+    private static float clamp(float velocity, float maxVelocity) {
+        return Math.max(-maxVelocity, Math.min(maxVelocity, velocity));
+    }
+
+    /**
+     * @return The horizontal velocity last computed by {@link #computeVelocity(int, float)}
+     */
+    public float getXVelocity() {
+        return mXVelocity;
+    }
+
+    /**
+     * @return The vertical velocity last computed by {@link #computeVelocity(int, float)}
+     */
+    public float getYVelocity() {
+        return mYVelocity;
+    }
+}
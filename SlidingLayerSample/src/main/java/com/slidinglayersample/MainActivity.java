@@ -26,6 +26,7 @@
 package com.slidinglayersample;
 
 import android.content.SharedPreferences;
+import android.graphics.Color;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
@@ -33,20 +34,41 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.view.KeyEvent;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.View;
 import android.widget.RelativeLayout.LayoutParams;
 import android.widget.TextView;
 
+import com.wunderlist.slidinglayer.CompositeTransformer;
 import com.wunderlist.slidinglayer.LayerTransformer;
 import com.wunderlist.slidinglayer.SlidingLayer;
 import com.wunderlist.slidinglayer.transformer.AlphaTransformer;
+import com.wunderlist.slidinglayer.transformer.KeyframeTransformer;
+import com.wunderlist.slidinglayer.transformer.ParallaxTransformer;
 import com.wunderlist.slidinglayer.transformer.RotationTransformer;
 import com.wunderlist.slidinglayer.transformer.SlideJoyTransformer;
 
 public class MainActivity extends AppCompatActivity {
 
+    // Slower fingers are left out of the lag in milliseconds, it would be mostly noise
+    private static final float MIN_LAG_SPEED = 0.05f;
+
     private SlidingLayer mSlidingLayer;
     private TextView swipeText;
+    private TextView dragLagText;
+
+    private boolean mHorizontalLayer;
+    private int mLayerScroll;
+
+    // Drag lag measurement, from the first event the layer followed
+    private boolean mMeasuringLag;
+    private float mLagOriginPosition;
+    private int mLagOriginScroll;
+    private float mLastPosition;
+    private long mLastEventTime;
+    private float mLagSum;
+    private float mLagMillisSum;
+    private int mLagSamples;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,6 +86,7 @@ public class MainActivity extends AppCompatActivity {
     private void bindViews() {
         mSlidingLayer = (SlidingLayer) findViewById(R.id.slidingLayer1);
         swipeText = (TextView) findViewById(R.id.swipeText);
+        dragLagText = (TextView) findViewById(R.id.dragLagText);
     }
 
     /**
@@ -79,6 +102,8 @@ public class MainActivity extends AppCompatActivity {
         setupShadow(prefs.getBoolean("layer_has_shadow", false));
         setupLayerOffset(prefs.getBoolean("layer_has_offset", false));
         setupPreviewMode(prefs.getBoolean("preview_mode_enabled", false));
+        setupTouchPrediction(prefs.getBoolean("touch_prediction_enabled", false));
+        setupScrim(prefs.getBoolean("layer_has_scrim", false));
     }
 
     private void initToolbar() {
@@ -123,6 +148,8 @@ public class MainActivity extends AppCompatActivity {
             rlp.height = getResources().getDimensionPixelSize(R.dimen.layer_size);
         }
 
+        mHorizontalLayer = layerPosition.equals("right") || layerPosition.equals("left");
+
         d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
         swipeText.setCompoundDrawables(null, d, null, null);
         swipeText.setText(getResources().getString(textResource));
@@ -143,6 +170,19 @@ public class MainActivity extends AppCompatActivity {
         case "slide":
             transformer = new SlideJoyTransformer();
             break;
+        case "keyframes":
+            transformer = new KeyframeTransformer(getResources(), R.xml.layer_keyframes);
+            break;
+        case "composite":
+            transformer = new CompositeTransformer(new AlphaTransformer(), new SlideJoyTransformer());
+            break;
+        case "parallax":
+            // Text trails behind the layer while the close button enters last
+            findViewById(R.id.swipeText).setTag(R.id.slidingLayerChildFactor, 0.4f);
+            findViewById(R.id.buttonClose).setTag(R.id.slidingLayerChildFactor, 0.2f);
+            findViewById(R.id.buttonClose).setTag(R.id.slidingLayerChildDelay, 0.5f);
+            transformer = new ParallaxTransformer();
+            break;
         default:
             return;
         }
@@ -169,6 +209,70 @@ public class MainActivity extends AppCompatActivity {
         mSlidingLayer.setPreviewOffsetDistance(previewOffset);
     }
 
+    private void setupScrim(boolean enabled) {
+        mSlidingLayer.setScrimColor(enabled ? getResources().getColor(R.color.scrim) : Color.TRANSPARENT);
+    }
+
+    private void setupTouchPrediction(boolean enabled) {
+        mSlidingLayer.setTouchPredictionEnabled(enabled);
+        mSlidingLayer.setOnScrollListener(new SlidingLayer.OnScrollListener() {
+            @Override
+            public void onScroll(int absoluteScroll) {
+                mLayerScroll = absoluteScroll;
+            }
+        });
+    }
+
+    /**
+     * Measures how far the layer trails the finger while dragging, once the layer has handled each event
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+
+        final boolean handled = super.dispatchTouchEvent(ev);
+        final float position = mHorizontalLayer ? ev.getRawX() : ev.getRawY();
+
+        switch (ev.getActionMasked()) {
+        case MotionEvent.ACTION_DOWN:
+            mMeasuringLag = false;
+            mLagOriginScroll = mLayerScroll;
+            mLagSum = mLagMillisSum = 0;
+            mLagSamples = 0;
+            break;
+
+        case MotionEvent.ACTION_MOVE:
+            if (!mMeasuringLag) {
+                if (mLayerScroll != mLagOriginScroll) {
+                    mMeasuringLag = true;
+                    mLagOriginPosition = position;
+                    mLagOriginScroll = mLayerScroll;
+                }
+                break;
+            }
+
+            final float lag = Math.abs(position - mLagOriginPosition) - Math.abs(mLayerScroll - mLagOriginScroll);
+            final long elapsed = ev.getEventTime() - mLastEventTime;
+            final float speed = elapsed > 0 ? Math.abs(position - mLastPosition) / elapsed : 0;
+            if (speed > MIN_LAG_SPEED) {
+                mLagSum += lag;
+                mLagMillisSum += lag / speed;
+                mLagSamples++;
+            }
+            break;
+
+        case MotionEvent.ACTION_UP:
+            if (mLagSamples > 0) {
+                dragLagText.setText(getString(R.string.drag_lag_label, mLagSum / mLagSamples,
+                        mLagMillisSum / mLagSamples));
+            }
+            break;
+        }
+
+        mLastPosition = position;
+        mLastEventTime = ev.getEventTime();
+        return handled;
+    }
+
     public void buttonClicked(View v) {
         switch (v.getId()) {
         case R.id.buttonOpen: